@@ -4,17 +4,31 @@ import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
+import org.bukkit.entity.Player;
+import com.xbedrock.backup.BackupManager;
+import com.xbedrock.connection.PingSampler;
+import com.xbedrock.player.PlayerDataCache;
 import com.xbedrock.pvp.PvPManager.PvPMode;
 import com.xbedrock.resource.ResourcePackManager;
+import com.xbedrock.security.PacketProfiler;
+import com.xbedrock.session.PlayerSession;
 
 import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 public class XBedrockCommand implements CommandExecutor, TabCompleter {
     private final XBedrockPlugin plugin;
+    private static final int MAX_PROFILE_SECONDS = 300;
+    private static final int PROFILE_TOP_N = 10;
+    private static final int PING_TOP_N = 10;
 
     public XBedrockCommand(XBedrockPlugin plugin) {
         this.plugin = plugin;
@@ -28,12 +42,17 @@ public class XBedrockCommand implements CommandExecutor, TabCompleter {
             sender.sendMessage("§6/xbedrock status §7- Show plugin status");
             sender.sendMessage("§6/xbedrock pvp <1.8|modern> §7- Set PvP mode");
             sender.sendMessage("§6/xbedrock resourcepack <add|remove|list> [name] §7- Manage resource packs");
+            sender.sendMessage("§6/xbedrock profile packets <seconds> §7- Profile inbound packets");
+            sender.sendMessage("§6/xbedrock ping [player] §7- Show Bedrock latency by platform or player");
+            sender.sendMessage("§6/xbedrock export <player|uuid> §7- Export stored player data as JSON");
+            sender.sendMessage("§6/xbedrock backup <now|list|restore <id> [uuid]> §7- Manage data snapshots");
             return true;
         }
 
         switch (args[0].toLowerCase()) {
             case "reload":
                 plugin.reloadConfig();
+                plugin.getSecurityManager().reload();
                 sender.sendMessage("§aConfiguration reloaded!");
                 break;
 
@@ -41,6 +60,12 @@ public class XBedrockCommand implements CommandExecutor, TabCompleter {
                 sender.sendMessage("§6X-Bedrock Status:");
                 sender.sendMessage("§7PvP Mode: §e" + plugin.getPvPManager().getCurrentMode().getName());
                 sender.sendMessage("§7Resource Packs: §e" + plugin.getResourcePackManager().getResourcePacks().size());
+                PlayerDataCache cache = plugin.getPlayerDataManager().getCache();
+                sender.sendMessage(String.format("§7Player Data Cache: §e%d online, %d cached §7(%.1f%% hits, %d evictions)",
+                        cache.getPinnedCount(),
+                        cache.getCachedCount(),
+                        cache.getHitRate() * 100,
+                        cache.getEvictionCount()));
                 break;
 
             case "pvp":
@@ -65,6 +90,34 @@ public class XBedrockCommand implements CommandExecutor, TabCompleter {
                 handleResourcePackCommand(sender, args);
                 break;
 
+            case "profile":
+                if (args.length < 3 || !args[1].equalsIgnoreCase("packets")) {
+                    sender.sendMessage("§cUsage: /xbedrock profile packets <seconds>");
+                    return true;
+                }
+                handleProfileCommand(sender, args[2]);
+                break;
+
+            case "ping":
+                handlePingCommand(sender, args.length > 1 ? args[1] : null);
+                break;
+
+            case "export":
+                if (args.length < 2) {
+                    sender.sendMessage("§cUsage: /xbedrock export <player|uuid>");
+                    return true;
+                }
+                handleExportCommand(sender, args[1]);
+                break;
+
+            case "backup":
+                if (args.length < 2) {
+                    sender.sendMessage("§cUsage: /xbedrock backup <now|list|restore <id> [uuid]>");
+                    return true;
+                }
+                handleBackupCommand(sender, args);
+                break;
+
             default:
                 sender.sendMessage("§cUnknown command! Use /xbedrock for help.");
                 break;
@@ -110,19 +163,204 @@ public class XBedrockCommand implements CommandExecutor, TabCompleter {
         }
     }
 
+    private void handleProfileCommand(CommandSender sender, String secondsArg) {
+        int seconds;
+        try {
+            seconds = Integer.parseInt(secondsArg);
+        } catch (NumberFormatException e) {
+            sender.sendMessage("§cInvalid number of seconds!");
+            return;
+        }
+        if (seconds < 1 || seconds > MAX_PROFILE_SECONDS) {
+            sender.sendMessage("§cProfile duration must be between 1 and " + MAX_PROFILE_SECONDS + " seconds!");
+            return;
+        }
+
+        PacketProfiler profiler = plugin.getSecurityManager().getPacketProfiler();
+        if (!profiler.start()) {
+            sender.sendMessage("§cA packet profile is already running!");
+            return;
+        }
+
+        sender.sendMessage("§aProfiling packets for " + seconds + " seconds...");
+        plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
+            PacketProfiler.Session session = profiler.stop();
+            if (session == null)
+                return;
+
+            double duration = session.getDurationSeconds();
+            long total = session.getTotalPackets();
+            sender.sendMessage(String.format("§6Packet Profile §7(%.1fs, %d packets, %.0f/s):",
+                    duration, total, total / duration));
+            for (PacketProfiler.PacketStats stats : session.getTop(PROFILE_TOP_N)) {
+                sender.sendMessage(String.format("§e%s §7%d (%.0f/s) §e%.1fKB §7avg %dns p99 <%dns",
+                        stats.getName(),
+                        stats.getCount(),
+                        stats.getCount() / duration,
+                        stats.getBytes() / 1024.0,
+                        stats.getAverageNanos(),
+                        stats.getPercentileNanos(0.99)));
+            }
+        }, seconds * 20L);
+    }
+
+    private void handlePingCommand(CommandSender sender, String playerName) {
+        if (playerName != null) {
+            Player target = plugin.getServer().getPlayerExact(playerName);
+            PlayerSession session = target != null ? plugin.getSessionManager().getSession(target) : null;
+            if (session == null || !session.isBedrock()) {
+                sender.sendMessage("§cNo Bedrock player named " + playerName + " is online!");
+                return;
+            }
+            PingSampler.PingHistory history = session.getPingHistory();
+            if (history.getSampleCount() == 0) {
+                sender.sendMessage("§cNo ping samples for " + target.getName() + " yet!");
+                return;
+            }
+            sender.sendMessage(String.format("§6%s §7now %dms p50 %dms p95 %dms p99 %dms jitter %.1fms §8(%d samples)",
+                    target.getName(),
+                    history.getLast(),
+                    history.getPercentile(0.50),
+                    history.getPercentile(0.95),
+                    history.getPercentile(0.99),
+                    history.getJitter(),
+                    history.getSampleCount()));
+            return;
+        }
+
+        List<PingSampler.PingGroup> groups = plugin.getBedrockManager().getPingSampler().getGroups();
+        if (groups.isEmpty()) {
+            sender.sendMessage("§cNo Bedrock ping samples yet!");
+            return;
+        }
+        sender.sendMessage("§6Bedrock Latency by Platform:");
+        for (PingSampler.PingGroup group : groups.subList(0, Math.min(PING_TOP_N, groups.size()))) {
+            sender.sendMessage(String.format("§e%s %s §7%d players p50 <%dms p95 <%dms p99 <%dms jitter %.1fms",
+                    group.getDeviceOS(),
+                    group.getClientVersion(),
+                    group.getPlayers(),
+                    group.getPercentile(0.50),
+                    group.getPercentile(0.95),
+                    group.getPercentile(0.99),
+                    group.getAverageJitter()));
+        }
+    }
+
+    private void handleExportCommand(CommandSender sender, String target) {
+        UUID uuid;
+        Player player = plugin.getServer().getPlayerExact(target);
+        if (player != null) {
+            uuid = player.getUniqueId();
+        } else {
+            try {
+                uuid = UUID.fromString(target);
+            } catch (IllegalArgumentException e) {
+                sender.sendMessage("§cPlayer is not online and " + target + " is not a UUID!");
+                return;
+            }
+        }
+
+        try {
+            File exportFile = plugin.getPlayerDataManager().exportPlayerData(uuid);
+            if (exportFile == null) {
+                sender.sendMessage("§cNo stored data for " + uuid + "!");
+                return;
+            }
+            sender.sendMessage("§aExported player data to " + exportFile.getPath());
+        } catch (IOException e) {
+            sender.sendMessage("§cFailed to export player data: " + e.getMessage());
+        }
+    }
+
+    private void handleBackupCommand(CommandSender sender, String[] args) {
+        BackupManager backupManager = plugin.getBackupManager();
+        switch (args[1].toLowerCase()) {
+            case "now":
+                if (!backupManager.backupNow(sender::sendMessage)) {
+                    sender.sendMessage("§cA backup or restore is already running!");
+                    return;
+                }
+                sender.sendMessage("§aWriting snapshot...");
+                break;
+
+            case "list":
+                List<BackupManager.Snapshot> snapshots = backupManager.listSnapshots();
+                if (snapshots.isEmpty()) {
+                    sender.sendMessage("§cNo snapshots yet!");
+                    return;
+                }
+                SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+                sender.sendMessage("§6Snapshots:");
+                for (BackupManager.Snapshot snapshot : snapshots) {
+                    sender.sendMessage(String.format("§e#%d §7%s %s §e%.1fKB",
+                            snapshot.getId(),
+                            snapshot.isFull() ? "full" : "incremental",
+                            format.format(new Date(snapshot.getCreatedAt())),
+                            snapshot.getFile().length() / 1024.0));
+                }
+                break;
+
+            case "restore":
+                if (args.length < 3) {
+                    sender.sendMessage("§cUsage: /xbedrock backup restore <id> [uuid]");
+                    return;
+                }
+                int id;
+                UUID uuid = null;
+                try {
+                    id = Integer.parseInt(args[2]);
+                    if (args.length > 3) {
+                        uuid = UUID.fromString(args[3]);
+                    }
+                } catch (IllegalArgumentException e) {
+                    sender.sendMessage("§cInvalid snapshot id or UUID!");
+                    return;
+                }
+                Set<UUID> online = plugin.getServer().getOnlinePlayers().stream()
+                        .map(Player::getUniqueId)
+                        .collect(Collectors.toSet());
+                if (uuid != null && online.contains(uuid)) {
+                    sender.sendMessage("§cThat player is online; restore them once they have logged out!");
+                    return;
+                }
+                if (!backupManager.restore(id, uuid, online, sender::sendMessage)) {
+                    sender.sendMessage("§cA backup or restore is already running!");
+                    return;
+                }
+                sender.sendMessage("§aRestoring snapshot #" + id + (online.isEmpty() ? "..." : ", skipping online players..."));
+                break;
+
+            default:
+                sender.sendMessage("§cUsage: /xbedrock backup <now|list|restore <id> [uuid]>");
+                break;
+        }
+    }
+
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         if (args.length == 1) {
-            return Arrays.asList("reload", "status", "pvp", "resourcepack");
+            return Arrays.asList("reload", "status", "pvp", "resourcepack", "profile", "ping", "export", "backup");
         } else if (args.length == 2) {
             if (args[0].equalsIgnoreCase("pvp")) {
                 return Arrays.asList("1.8", "modern");
             } else if (args[0].equalsIgnoreCase("resourcepack")) {
                 return Arrays.asList("add", "remove", "list");
+            } else if (args[0].equalsIgnoreCase("profile")) {
+                return Arrays.asList("packets");
+            } else if (args[0].equalsIgnoreCase("backup")) {
+                return Arrays.asList("now", "list", "restore");
+            } else if (args[0].equalsIgnoreCase("ping") || args[0].equalsIgnoreCase("export")) {
+                return plugin.getServer().getOnlinePlayers().stream()
+                        .map(Player::getName)
+                        .collect(Collectors.toList());
             }
         } else if (args.length == 3) {
             if (args[0].equalsIgnoreCase("resourcepack") && args[1].equalsIgnoreCase("remove")) {
                 return new ArrayList<>(plugin.getResourcePackManager().getResourcePacks().keySet());
+            } else if (args[0].equalsIgnoreCase("backup") && args[1].equalsIgnoreCase("restore")) {
+                return plugin.getBackupManager().listSnapshotIds().stream()
+                        .map(String::valueOf)
+                        .collect(Collectors.toList());
             }
         }
         return new ArrayList<>();
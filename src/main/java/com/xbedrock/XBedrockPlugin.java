@@ -1,25 +1,40 @@
 package com.xbedrock;
 
+import com.xbedrock.backup.BackupManager;
 import com.xbedrock.connection.BedrockConnectionManager;
 import com.xbedrock.connection.ConnectionGate;
+import com.xbedrock.connection.LoginPipeline;
+import com.xbedrock.connection.PlayerIntrospector;
 import com.xbedrock.cosmetics.CosmeticsManager;
 import com.xbedrock.player.PlayerDataManager;
 import com.xbedrock.pvp.PvPManager;
 import com.xbedrock.resource.ResourcePackManager;
 import com.xbedrock.roblox.RobloxManager;
 import com.xbedrock.security.SecurityManager;
+import com.xbedrock.session.SessionManager;
+import com.xbedrock.storage.DataStore;
+import com.xbedrock.storage.ShutdownBarrier;
 import com.xbedrock.webstore.WebstoreManager;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.IOException;
+import java.util.logging.Level;
+
 public class XBedrockPlugin extends JavaPlugin {
+    private BackupManager backupManager;
     private BedrockConnectionManager bedrockManager;
     private ConnectionGate connectionGate;
+    private LoginPipeline loginPipeline;
     private CosmeticsManager cosmeticsManager;
+    private DataStore dataStore;
     private PlayerDataManager playerDataManager;
+    private PlayerIntrospector playerIntrospector;
     private PvPManager pvpManager;
     private ResourcePackManager resourcePackManager;
     private RobloxManager robloxManager;
     private SecurityManager securityManager;
+    private SessionManager sessionManager;
+    private ShutdownBarrier shutdownBarrier;
     private WebstoreManager webstoreManager;
 
     @Override
@@ -27,9 +42,22 @@ public class XBedrockPlugin extends JavaPlugin {
         // Save default config
         saveDefaultConfig();
 
+        // Open the shared data store first; every manager that persists player state needs it
+        try {
+            this.dataStore = new DataStore(this);
+        } catch (IOException e) {
+            getLogger().log(Level.SEVERE, "Failed to open the data store, disabling X-Bedrock", e);
+            getServer().getPluginManager().disablePlugin(this);
+            return;
+        }
+        this.shutdownBarrier = new ShutdownBarrier(this);
+
         // Initialize managers
+        this.playerIntrospector = new PlayerIntrospector(this);
+        this.sessionManager = new SessionManager(this);
         this.securityManager = new SecurityManager(this);
         this.connectionGate = new ConnectionGate(this);
+        this.loginPipeline = new LoginPipeline(this);
         this.bedrockManager = new BedrockConnectionManager(this);
         this.playerDataManager = new PlayerDataManager(this);
         this.cosmeticsManager = new CosmeticsManager(this);
@@ -37,6 +65,7 @@ public class XBedrockPlugin extends JavaPlugin {
         this.resourcePackManager = new ResourcePackManager(this);
         this.robloxManager = new RobloxManager(this);
         this.webstoreManager = new WebstoreManager(this);
+        this.backupManager = new BackupManager(this);
 
         // Register commands
         getCommand("xbedrock").setExecutor(new XBedrockCommand(this));
@@ -51,14 +80,35 @@ public class XBedrockPlugin extends JavaPlugin {
             bedrockManager.shutdown();
         if (connectionGate != null)
             connectionGate.shutdown();
+        if (loginPipeline != null)
+            loginPipeline.shutdown();
+        if (securityManager != null)
+            securityManager.shutdown();
+
+        // Save all dirty state in parallel before anything is torn down
+        if (shutdownBarrier != null)
+            shutdownBarrier.flush();
+
         if (robloxManager != null)
             robloxManager.shutdown();
         if (webstoreManager != null)
             webstoreManager.shutdown();
+        if (playerDataManager != null)
+            playerDataManager.shutdown();
+        if (backupManager != null)
+            backupManager.shutdown();
+        if (dataStore != null)
+            dataStore.shutdown();
+        if (sessionManager != null)
+            sessionManager.shutdown();
 
         getLogger().info("X-Bedrock has been disabled!");
     }
 
+    public BackupManager getBackupManager() {
+        return backupManager;
+    }
+
     public BedrockConnectionManager getBedrockManager() {
         return bedrockManager;
     }
@@ -67,14 +117,26 @@ public class XBedrockPlugin extends JavaPlugin {
         return connectionGate;
     }
 
+    public LoginPipeline getLoginPipeline() {
+        return loginPipeline;
+    }
+
     public CosmeticsManager getCosmeticsManager() {
         return cosmeticsManager;
     }
 
+    public DataStore getDataStore() {
+        return dataStore;
+    }
+
     public PlayerDataManager getPlayerDataManager() {
         return playerDataManager;
     }
 
+    public PlayerIntrospector getPlayerIntrospector() {
+        return playerIntrospector;
+    }
+
     public PvPManager getPvPManager() {
         return pvpManager;
     }
@@ -91,6 +153,14 @@ public class XBedrockPlugin extends JavaPlugin {
         return securityManager;
     }
 
+    public SessionManager getSessionManager() {
+        return sessionManager;
+    }
+
+    public ShutdownBarrier getShutdownBarrier() {
+        return shutdownBarrier;
+    }
+
     public WebstoreManager getWebstoreManager() {
         return webstoreManager;
     }
@@ -0,0 +1,465 @@
+package com.xbedrock.backup;
+
+import com.xbedrock.XBedrockPlugin;
+import com.xbedrock.player.storage.WriteBehindQueue;
+import com.xbedrock.storage.SegmentStore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Incremental snapshots of player, webstore and Roblox data.
+//
+// The segment store only ever appends, so a snapshot holds the records written after the
+// previous snapshot's watermark. Files left in the per-UUID folders (legacy JSON, or the file
+// backend) are included when their modification time is newer than the previous snapshot.
+// Every backup-full-every snapshots a full one starts a new chain, and chains older than the
+// previous one are deleted. Snapshots are gzip streams written at low priority with capped
+// bandwidth, and only become visible once complete.
+public class BackupManager {
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)-(full|incr)\\.xbk");
+    private static final int MAGIC = 0x58424B31; // "XBK1"
+    private static final int RECORD_END = 0;
+    private static final int RECORD_STORE = 1;
+    private static final int RECORD_FILE = 2;
+    private static final String[] FILE_FOLDERS = { "playerdata", "webstore", "roblox" };
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long DEFAULT_INTERVAL = 3600; // seconds
+    private static final long DEFAULT_MAX_RATE = 4096; // KB/s
+    private static final int DEFAULT_FULL_EVERY = 24;
+
+    private final XBedrockPlugin plugin;
+    private final File backupFolder;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean busy;
+    private final long maxBytesPerSecond;
+    private final int fullEvery;
+
+    public BackupManager(XBedrockPlugin plugin) {
+        this.plugin = plugin;
+        this.backupFolder = new File(plugin.getDataFolder(), "backups");
+        this.busy = new AtomicBoolean();
+        this.maxBytesPerSecond = plugin.getConfig().getLong("settings.backup-max-rate", DEFAULT_MAX_RATE) * 1024;
+        this.fullEvery = Math.max(1, plugin.getConfig().getInt("settings.backup-full-every", DEFAULT_FULL_EVERY));
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "XBedrock-Backup");
+            thread.setDaemon(true);
+            // Backups must never compete with the server for CPU
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+
+        if (plugin.getConfig().getBoolean("settings.backup-data", true)) {
+            long interval = Math.max(60, plugin.getConfig().getLong("settings.backup-interval", DEFAULT_INTERVAL));
+            executor.scheduleWithFixedDelay(() -> backup(null), interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    // Returns false if a backup or restore is already running
+    public boolean backupNow(Consumer<String> callback) {
+        if (busy.get())
+            return false;
+        executor.execute(() -> backup(callback));
+        return true;
+    }
+
+    // Restores one player, or everyone when uuid is null. Online players are skipped, since their
+    // in-memory state would overwrite the restored records on the next save. Offline players'
+    // queued saves are dropped first and their cached state is forgotten afterwards.
+    public boolean restore(int snapshotId, UUID uuid, Set<UUID> online, Consumer<String> callback) {
+        if (busy.get())
+            return false;
+        Predicate<UUID> restoring = key -> (uuid == null || uuid.equals(key)) && !online.contains(key);
+        WriteBehindQueue saveQueue = plugin.getPlayerDataManager().getSaveQueue();
+        executor.execute(() -> {
+            if (!busy.compareAndSet(false, true)) {
+                reply(callback, "§cA backup or restore is already running!");
+                return;
+            }
+            boolean held = false;
+            try {
+                runOnMainThread(() -> saveQueue.hold(restoring));
+                held = true;
+                saveQueue.awaitWrites();
+
+                int restored = restoreChain(snapshotId, uuid, restoring);
+                reply(callback, () -> {
+                    if (uuid != null) {
+                        plugin.getPlayerDataManager().getCache().invalidate(uuid);
+                    } else {
+                        plugin.getPlayerDataManager().getCache().invalidateAll();
+                    }
+                    plugin.getWebstoreManager().invalidate(restoring);
+                    plugin.getRobloxManager().invalidate(restoring);
+                    saveQueue.release();
+                }, "§aRestored " + restored + " records from snapshot #" + snapshotId);
+            } catch (IOException | InterruptedException e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                plugin.getLogger().log(Level.SEVERE, "Failed to restore snapshot #" + snapshotId, e);
+                reply(callback, held ? saveQueue::release : null, "§cRestore failed: " + e.getMessage());
+            } finally {
+                busy.set(false);
+            }
+        });
+        return true;
+    }
+
+    // Ids from the file names alone; cheap enough for tab completion on the main thread
+    public List<Integer> listSnapshotIds() {
+        List<Integer> ids = new ArrayList<>();
+        String[] names = backupFolder.list();
+        if (names == null)
+            return ids;
+
+        for (String name : names) {
+            Matcher matcher = SNAPSHOT_NAME.matcher(name);
+            if (matcher.matches()) {
+                ids.add(Integer.parseInt(matcher.group(1)));
+            }
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    public List<Snapshot> listSnapshots() {
+        List<Snapshot> snapshots = new ArrayList<>();
+        File[] files = backupFolder.listFiles();
+        if (files == null)
+            return snapshots;
+
+        for (File file : files) {
+            Matcher matcher = SNAPSHOT_NAME.matcher(file.getName());
+            if (!matcher.matches())
+                continue;
+            try (DataInputStream in = open(file)) {
+                if (in.readInt() != MAGIC)
+                    continue;
+                snapshots.add(new Snapshot(Integer.parseInt(matcher.group(1)), matcher.group(2).equals("full"),
+                        in.readLong(), in.readLong(), file));
+            } catch (IOException e) {
+                plugin.getLogger().warning("Ignoring unreadable snapshot " + file.getName() + ": " + e.getMessage());
+            }
+        }
+        snapshots.sort(Comparator.comparingInt(Snapshot::getId));
+        return snapshots;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void backup(Consumer<String> callback) {
+        if (!busy.compareAndSet(false, true)) {
+            reply(callback, "§cA backup or restore is already running!");
+            return;
+        }
+        try {
+            Snapshot snapshot = createSnapshot();
+            if (snapshot == null) {
+                reply(callback, "§aNo changes since the last snapshot.");
+                return;
+            }
+            plugin.getLogger().info("Wrote " + (snapshot.isFull() ? "full" : "incremental") + " snapshot #"
+                    + snapshot.getId() + " (" + snapshot.getFile().length() / 1024 + " KB)");
+            reply(callback, "§aWrote snapshot #" + snapshot.getId());
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Backup failed", e);
+            reply(callback, "§cBackup failed: " + e.getMessage());
+        } finally {
+            busy.set(false);
+        }
+    }
+
+    private Snapshot createSnapshot() throws IOException {
+        Files.createDirectories(backupFolder.toPath());
+        List<Snapshot> snapshots = listSnapshots();
+        Snapshot previous = snapshots.isEmpty() ? null : snapshots.get(snapshots.size() - 1);
+        int sinceFull = 0;
+        for (int i = snapshots.size() - 1; i >= 0 && !snapshots.get(i).isFull(); i--) {
+            sinceFull++;
+        }
+
+        boolean full = previous == null || sinceFull + 1 >= fullEvery;
+        long since = full ? 0 : previous.getWatermark();
+        long modifiedSince = full ? 0 : previous.getCreatedAt();
+        int id = previous == null ? 1 : previous.getId() + 1;
+
+        SegmentStore store = plugin.getDataStore().getStore();
+        SegmentStore.Snapshot changes = store.snapshotSince(since);
+        long watermark = changes.getWatermark();
+        long createdAt = System.currentTimeMillis();
+
+        File target = new File(backupFolder, String.format("snapshot-%06d-%s.xbk", id, full ? "full" : "incr"));
+        File temp = new File(backupFolder, target.getName() + TEMP_SUFFIX);
+        int records;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(
+                new ThrottledOutputStream(new FileOutputStream(temp), maxBytesPerSecond), BUFFER_SIZE), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeLong(createdAt);
+            out.writeLong(watermark);
+
+            records = changes.forEach((namespace, uuid, value) -> {
+                out.writeByte(RECORD_STORE);
+                out.writeByte(namespace);
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+                out.writeInt(value.length);
+                out.write(value);
+            });
+            records += writeChangedFiles(out, modifiedSince);
+            out.writeByte(RECORD_END);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp.toPath());
+            throw e;
+        }
+
+        if (records == 0 && !full) {
+            Files.deleteIfExists(temp.toPath());
+            return null;
+        }
+        move(temp.toPath(), target.toPath());
+
+        if (full) {
+            prune(snapshots);
+        }
+        return new Snapshot(id, full, createdAt, watermark, target);
+    }
+
+    private int writeChangedFiles(DataOutputStream out, long modifiedSince) throws IOException {
+        int written = 0;
+        for (String folderName : FILE_FOLDERS) {
+            File[] files = new File(plugin.getDataFolder(), folderName).listFiles();
+            if (files == null)
+                continue;
+            for (File file : files) {
+                if (!file.isFile() || file.getName().endsWith(TEMP_SUFFIX) || file.lastModified() < modifiedSince)
+                    continue;
+                byte[] content;
+                try {
+                    content = Files.readAllBytes(file.toPath());
+                } catch (IOException e) {
+                    // Deleted or replaced while we were listing
+                    continue;
+                }
+                out.writeByte(RECORD_FILE);
+                out.writeUTF(folderName + "/" + file.getName());
+                out.writeInt(content.length);
+                out.write(content);
+                written++;
+            }
+        }
+        return written;
+    }
+
+    // Keeps the chain that was just superseded and drops everything before it
+    private void prune(List<Snapshot> snapshots) {
+        int keepFrom = -1;
+        for (Snapshot snapshot : snapshots) {
+            if (snapshot.isFull()) {
+                keepFrom = snapshot.getId();
+            }
+        }
+        for (Snapshot snapshot : snapshots) {
+            if (snapshot.getId() < keepFrom && !snapshot.getFile().delete()) {
+                plugin.getLogger().warning("Failed to delete old snapshot " + snapshot.getFile().getName());
+            }
+        }
+    }
+
+    private int restoreChain(int snapshotId, UUID uuid, Predicate<UUID> restoring) throws IOException {
+        // The newest full snapshot at or before the target, then every increment up to it
+        List<Snapshot> chain = new ArrayList<>();
+        for (Snapshot snapshot : listSnapshots()) {
+            if (snapshot.getId() > snapshotId)
+                break;
+            if (snapshot.isFull()) {
+                chain.clear();
+            }
+            chain.add(snapshot);
+        }
+        if (chain.isEmpty() || !chain.get(0).isFull() || chain.get(chain.size() - 1).getId() != snapshotId)
+            throw new IOException("No complete chain ends at snapshot #" + snapshotId);
+
+        // Applying in order leaves the newest version of each record in place
+        SegmentStore store = plugin.getDataStore().getStore();
+        Path dataFolder = plugin.getDataFolder().toPath().toAbsolutePath().normalize();
+        int restored = 0;
+        for (Snapshot snapshot : chain) {
+            try (DataInputStream in = open(snapshot.getFile())) {
+                in.readInt();
+                in.readLong();
+                in.readLong();
+                int type;
+                while ((type = in.readUnsignedByte()) != RECORD_END) {
+                    if (type == RECORD_STORE) {
+                        int namespace = in.readUnsignedByte();
+                        UUID key = new UUID(in.readLong(), in.readLong());
+                        byte[] value = readValue(in);
+                        if (restoring.test(key)) {
+                            store.put(namespace, key, value);
+                            restored++;
+                        }
+                    } else if (type == RECORD_FILE) {
+                        String name = in.readUTF();
+                        byte[] content = readValue(in);
+                        UUID key = uuidOf(name);
+                        // Shared files are only restored with everyone
+                        if (key != null ? restoring.test(key) : uuid == null) {
+                            restoreFile(dataFolder, name, content);
+                            restored++;
+                        }
+                    } else {
+                        throw new IOException("Corrupt snapshot " + snapshot.getFile().getName());
+                    }
+                }
+            } catch (EOFException e) {
+                throw new IOException("Truncated snapshot " + snapshot.getFile().getName(), e);
+            }
+        }
+        return restored;
+    }
+
+    private void restoreFile(Path dataFolder, String name, byte[] content) throws IOException {
+        Path target = dataFolder.resolve(name).normalize();
+        if (!target.startsWith(dataFolder))
+            throw new IOException("Snapshot entry escapes the data folder: " + name);
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        Files.write(temp, content);
+        move(temp, target);
+    }
+
+    private static byte[] readValue(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            throw new IOException("Corrupt record length " + length);
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+
+    // Per-player files are named <uuid>.<ext>; anything else is shared
+    private static UUID uuidOf(String name) {
+        String fileName = name.substring(name.lastIndexOf('/') + 1);
+        int dot = fileName.indexOf('.');
+        try {
+            return UUID.fromString(dot >= 0 ? fileName.substring(0, dot) : fileName);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static DataInputStream open(File file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file), BUFFER_SIZE), BUFFER_SIZE));
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Blocks the backup thread until the main thread has run the action
+    private void runOnMainThread(Runnable action) throws IOException, InterruptedException {
+        try {
+            plugin.getServer().getScheduler().callSyncMethod(plugin, () -> {
+                action.run();
+                return null;
+            }).get();
+        } catch (ExecutionException e) {
+            throw new IOException("Main thread task failed", e.getCause());
+        }
+    }
+
+    private void reply(Consumer<String> callback, String message) {
+        reply(callback, null, message);
+    }
+
+    // Runs the follow-up and the reply on the main thread
+    private void reply(Consumer<String> callback, Runnable mainThreadAction, String message) {
+        if (!plugin.isEnabled())
+            return;
+        plugin.getServer().getScheduler().runTask(plugin, () -> {
+            if (mainThreadAction != null) {
+                mainThreadAction.run();
+            }
+            if (callback != null) {
+                callback.accept(message);
+            }
+        });
+    }
+
+    public static class Snapshot {
+        private final int id;
+        private final boolean full;
+        private final long createdAt;
+        private final long watermark;
+        private final File file;
+
+        private Snapshot(int id, boolean full, long createdAt, long watermark, File file) {
+            this.id = id;
+            this.full = full;
+            this.createdAt = createdAt;
+            this.watermark = watermark;
+            this.file = file;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public boolean isFull() {
+            return full;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        public long getWatermark() {
+            return watermark;
+        }
+
+        public File getFile() {
+            return file;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.xbedrock.backup;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+// Caps write bandwidth by sleeping whenever the stream gets ahead of its byte budget
+class ThrottledOutputStream extends FilterOutputStream {
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long bytesPerSecond;
+    private long windowStart;
+    private long windowBytes;
+
+    ThrottledOutputStream(OutputStream out, long bytesPerSecond) {
+        super(out);
+        this.bytesPerSecond = bytesPerSecond;
+        this.windowStart = System.nanoTime();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        throttle(1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        throttle(len);
+    }
+
+    private void throttle(int bytes) throws IOException {
+        if (bytesPerSecond <= 0)
+            return;
+
+        windowBytes += bytes;
+        long elapsed = System.nanoTime() - windowStart;
+        long allowedAt = windowBytes * WINDOW_NANOS / bytesPerSecond;
+        if (allowedAt > elapsed) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(allowedAt - elapsed);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Backup interrupted");
+            }
+        }
+        if (elapsed >= WINDOW_NANOS) {
+            windowStart = System.nanoTime();
+            windowBytes = 0;
+        }
+    }
+}
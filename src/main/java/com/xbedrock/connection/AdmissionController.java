@@ -0,0 +1,139 @@
+package com.xbedrock.connection;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class AdmissionController {
+    private static final long TOKEN_SCALE = 1000; // tokens are stored in thousandths
+    private static final long QUEUE_TIMEOUT = 30000; // 30 seconds
+    private static final long RESERVATION_TIMEOUT = 30000; // 30 seconds to reconnect once admitted
+
+    public enum Decision {
+        ADMITTED, QUEUED, FULL, LIMITED
+    }
+
+    private final Queue<ConnectionInfo> queue;
+    private final Map<UUID, ConnectionInfo> queued;
+    private final Map<UUID, Long> reservations;
+    private final AtomicLong lastIssuedTicket;
+    private final AtomicLong lastServedTicket;
+    private final AtomicLong tokens;
+    private volatile long capacity;
+    private volatile int maxQueueSize;
+
+    public AdmissionController(int maxQueueSize) {
+        this.queue = new ConcurrentLinkedQueue<>();
+        this.queued = new ConcurrentHashMap<>();
+        this.reservations = new ConcurrentHashMap<>();
+        this.lastIssuedTicket = new AtomicLong(0);
+        this.lastServedTicket = new AtomicLong(0);
+        this.tokens = new AtomicLong(0);
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    public Decision admit(ConnectionInfo info) {
+        long now = System.currentTimeMillis();
+
+        // Players admitted from the queue hold a reservation until they reconnect
+        Long reservation = reservations.remove(info.getUuid());
+        if (reservation != null && reservation > now) {
+            return Decision.ADMITTED;
+        }
+
+        if (queued.containsKey(info.getUuid())) {
+            return Decision.QUEUED;
+        }
+
+        // Only skip the queue when nobody is waiting, otherwise FIFO order would be broken
+        if (getQueueSize() == 0 && tryAcquire()) {
+            return Decision.ADMITTED;
+        }
+
+        // Tickets must be issued in queue order, or positions and the size estimate drift
+        synchronized (queue) {
+            if (getQueueSize() >= maxQueueSize) {
+                return Decision.FULL;
+            }
+            if (queued.putIfAbsent(info.getUuid(), info) != null) {
+                return Decision.QUEUED;
+            }
+            info.setTicket(lastIssuedTicket.incrementAndGet());
+            queue.add(info);
+        }
+        return Decision.QUEUED;
+    }
+
+    // Called once per processor tick on the main thread
+    public void tick(double tokensPerTick, long burstCapacity) {
+        this.capacity = burstCapacity * TOKEN_SCALE;
+        refill((long) (tokensPerTick * TOKEN_SCALE));
+
+        long now = System.currentTimeMillis();
+        ConnectionInfo head;
+        while ((head = queue.peek()) != null) {
+            if (now - head.getQueueTime() <= QUEUE_TIMEOUT) {
+                if (!tryAcquire())
+                    break;
+                reservations.put(head.getUuid(), now + RESERVATION_TIMEOUT);
+            }
+
+            // Timeouts are also in FIFO order since every entry shares the same timeout
+            queue.poll();
+            queued.remove(head.getUuid());
+            lastServedTicket.accumulateAndGet(head.getTicket(), Math::max);
+        }
+
+        reservations.values().removeIf(expiry -> expiry <= now);
+    }
+
+    public int getPosition(UUID uuid) {
+        ConnectionInfo info = queued.get(uuid);
+        if (info == null)
+            return -1;
+        return (int) Math.max(1, info.getTicket() - lastServedTicket.get());
+    }
+
+    public int getQueueSize() {
+        return (int) (lastIssuedTicket.get() - lastServedTicket.get());
+    }
+
+    public void setMaxQueueSize(int maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    public void clear() {
+        synchronized (queue) {
+            queue.clear();
+            queued.clear();
+            lastServedTicket.set(lastIssuedTicket.get());
+        }
+        reservations.clear();
+    }
+
+    private void refill(long amount) {
+        long current;
+        long updated;
+        do {
+            current = tokens.get();
+            updated = Math.min(capacity, current + amount);
+        } while (!tokens.compareAndSet(current, updated));
+    }
+
+    private boolean tryAcquire() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < TOKEN_SCALE)
+                return false;
+        } while (!tokens.compareAndSet(current, current - TOKEN_SCALE));
+        return true;
+    }
+}
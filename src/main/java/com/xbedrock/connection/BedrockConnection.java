@@ -7,29 +7,15 @@ import java.util.UUID;
 public class BedrockConnection {
     private final UUID uuid;
     private final String username;
-    private final String deviceId;
-    private final String deviceModel;
-    private final String deviceOS;
-    private final String clientVersion;
-    private final String language;
-    private final boolean isPremium;
+    private final DeviceProfile deviceProfile;
     private boolean connected;
     private long connectionTime;
     private int ping;
-    private String lastWorld;
-    private double lastX, lastY, lastZ;
-    private float lastYaw, lastPitch;
 
-    public BedrockConnection(UUID uuid, String username, String deviceId, String deviceModel,
-            String deviceOS, String clientVersion, String language, boolean isPremium) {
+    public BedrockConnection(UUID uuid, String username, DeviceProfile deviceProfile) {
         this.uuid = Objects.requireNonNull(uuid, "UUID cannot be null");
         this.username = Objects.requireNonNull(username, "Username cannot be null");
-        this.deviceId = Objects.requireNonNull(deviceId, "Device ID cannot be null");
-        this.deviceModel = Objects.requireNonNull(deviceModel, "Device model cannot be null");
-        this.deviceOS = Objects.requireNonNull(deviceOS, "Device OS cannot be null");
-        this.clientVersion = Objects.requireNonNull(clientVersion, "Client version cannot be null");
-        this.language = Objects.requireNonNull(language, "Language cannot be null");
-        this.isPremium = isPremium;
+        this.deviceProfile = Objects.requireNonNull(deviceProfile, "Device profile cannot be null");
         this.connected = false;
         this.connectionTime = System.currentTimeMillis();
         this.ping = -1;
@@ -43,28 +29,32 @@ public class BedrockConnection {
         return username;
     }
 
+    public DeviceProfile getDeviceProfile() {
+        return deviceProfile;
+    }
+
     public String getDeviceId() {
-        return deviceId;
+        return deviceProfile.getDeviceId();
     }
 
     public String getDeviceModel() {
-        return deviceModel;
+        return deviceProfile.getDeviceModel();
     }
 
     public String getDeviceOS() {
-        return deviceOS;
+        return deviceProfile.getDeviceOS();
     }
 
     public String getClientVersion() {
-        return clientVersion;
+        return deviceProfile.getClientVersion();
     }
 
     public String getLanguage() {
-        return language;
+        return deviceProfile.getLanguage();
     }
 
     public boolean isPremium() {
-        return isPremium;
+        return deviceProfile.isPremium();
     }
 
     public boolean isConnected() {
@@ -94,39 +84,6 @@ public class BedrockConnection {
         this.ping = Math.max(0, ping);
     }
 
-    public void updatePosition(String world, double x, double y, double z, float yaw, float pitch) {
-        this.lastWorld = world;
-        this.lastX = x;
-        this.lastY = y;
-        this.lastZ = z;
-        this.lastYaw = yaw;
-        this.lastPitch = pitch;
-    }
-
-    public String getLastWorld() {
-        return lastWorld;
-    }
-
-    public double getLastX() {
-        return lastX;
-    }
-
-    public double getLastY() {
-        return lastY;
-    }
-
-    public double getLastZ() {
-        return lastZ;
-    }
-
-    public float getLastYaw() {
-        return lastYaw;
-    }
-
-    public float getLastPitch() {
-        return lastPitch;
-    }
-
     public void disconnect(Player player) {
         if (player != null && player.isOnline()) {
             player.kickPlayer("§cBedrock connection closed");
@@ -141,17 +98,17 @@ public class BedrockConnection {
         if (o == null || getClass() != o.getClass())
             return false;
         BedrockConnection that = (BedrockConnection) o;
-        return uuid.equals(that.uuid) && deviceId.equals(that.deviceId);
+        return uuid.equals(that.uuid) && getDeviceId().equals(that.getDeviceId());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(uuid, deviceId);
+        return Objects.hash(uuid, getDeviceId());
     }
 
     @Override
     public String toString() {
         return String.format("BedrockConnection{uuid=%s, username='%s', device='%s', version='%s', connected=%s}",
-                uuid, username, deviceModel, clientVersion, connected);
+                uuid, username, getDeviceModel(), getClientVersion(), connected);
     }
 }
\ No newline at end of file
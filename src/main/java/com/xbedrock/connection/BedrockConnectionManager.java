@@ -1,6 +1,9 @@
 package com.xbedrock.connection;
 
 import com.xbedrock.XBedrockPlugin;
+import com.xbedrock.session.PlayerSession;
+import com.xbedrock.session.PositionStore;
+import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -9,79 +12,59 @@ import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
-import org.bukkit.scheduler.BukkitTask;
 
-import java.lang.reflect.Method;
-import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 public class BedrockConnectionManager implements Listener {
     private final XBedrockPlugin plugin;
-    private final Map<UUID, BedrockConnection> connections;
-    private final Map<String, String> deviceInfo;
-    private final Map<UUID, Long> lastPositionUpdate;
-    private BukkitTask pingTask;
-    private static final long POSITION_UPDATE_INTERVAL = 50; // 2.5 seconds
-    private static final int PING_UPDATE_INTERVAL = 100; // 5 seconds
+    private final PositionStore positions;
+    // Reused for join-time reads so position tracking never allocates a Location
+    private final Location scratchLocation;
+    private final PingSampler pingSampler;
+    private static final long POSITION_UPDATE_INTERVAL = 2500; // 2.5 seconds
 
     public BedrockConnectionManager(XBedrockPlugin plugin) {
         this.plugin = plugin;
-        this.connections = new ConcurrentHashMap<>();
-        this.deviceInfo = new ConcurrentHashMap<>();
-        this.lastPositionUpdate = new ConcurrentHashMap<>();
+        this.positions = plugin.getSessionManager().getPositionStore();
+        this.scratchLocation = new Location(null, 0, 0, 0);
 
         // Register events
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
 
-        // Start ping task
-        startPingTask();
+        // Start ping sampling
+        this.pingSampler = new PingSampler(plugin);
+        pingSampler.start();
     }
 
-    private void startPingTask() {
-        pingTask = plugin.getServer().getScheduler().runTaskTimer(plugin, () -> {
-            for (Map.Entry<UUID, BedrockConnection> entry : connections.entrySet()) {
-                Player player = plugin.getServer().getPlayer(entry.getKey());
-                if (player != null && player.isOnline()) {
-                    try {
-                        int ping = getPlayerPing(player);
-                        entry.getValue().setPing(ping);
-                    } catch (Exception e) {
-                        plugin.getLogger().log(Level.WARNING, "Failed to update ping for " + player.getName(), e);
-                    }
-                }
-            }
-        }, PING_UPDATE_INTERVAL, PING_UPDATE_INTERVAL);
-    }
-
-    @EventHandler(priority = EventPriority.MONITOR)
+    // HIGHEST, not MONITOR: a failure here refuses the login, and the MONITOR handlers that close
+    // the session and unpin the player data must see that refusal
+    @EventHandler(priority = EventPriority.HIGHEST)
     public void onPlayerLogin(PlayerLoginEvent event) {
-        if (!isBedrockPlayer(event.getPlayer()))
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED)
+            return;
+
+        // Reuse the profile captured during async pre-login when there is one
+        LoginPipeline.PreparedLogin prepared = plugin.getLoginPipeline()
+                .getPreparedLogin(event.getPlayer().getUniqueId());
+        boolean preparedBedrock = prepared != null && prepared.isBedrock();
+        if (!preparedBedrock && !isBedrockPlayer(event.getPlayer()))
+            return;
+
+        PlayerSession session = plugin.getSessionManager().getSession(event.getPlayer());
+        if (session == null)
             return;
 
         try {
-            String address = event.getAddress().getHostAddress();
-            String deviceId = extractDeviceId(event.getPlayer());
-            String deviceModel = extractDeviceModel(event.getPlayer());
-            String deviceOS = extractDeviceOS(event.getPlayer());
-            String clientVersion = extractClientVersion(event.getPlayer());
-            String language = extractLanguage(event.getPlayer());
-            boolean isPremium = isPremiumPlayer(event.getPlayer());
+            DeviceProfile profile = preparedBedrock ? prepared.getDeviceProfile()
+                    : DeviceProfile.capture(event.getPlayer(), plugin.getPlayerIntrospector());
 
             BedrockConnection connection = new BedrockConnection(
                     event.getPlayer().getUniqueId(),
                     event.getPlayer().getName(),
-                    deviceId,
-                    deviceModel,
-                    deviceOS,
-                    clientVersion,
-                    language,
-                    isPremium);
+                    profile);
 
-            connections.put(event.getPlayer().getUniqueId(), connection);
-            deviceInfo.put(deviceId, address);
-            lastPositionUpdate.put(event.getPlayer().getUniqueId(), System.currentTimeMillis());
+            session.setBedrockConnection(connection);
 
             // Initialize player data
             plugin.getPlayerDataManager().initializePlayerData(connection);
@@ -94,20 +77,21 @@ public class BedrockConnectionManager implements Listener {
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onPlayerJoin(PlayerJoinEvent event) {
-        BedrockConnection connection = connections.get(event.getPlayer().getUniqueId());
-        if (connection != null) {
-            connection.setConnected(true);
-            updatePlayerPosition(event.getPlayer());
+        PlayerSession session = plugin.getSessionManager().getSession(event.getPlayer());
+        if (session != null && session.isBedrock()) {
+            session.getBedrockConnection().setConnected(true);
+            positions.update(session.getIndex(), event.getPlayer().getLocation(scratchLocation),
+                    System.currentTimeMillis());
         }
     }
 
-    @EventHandler(priority = EventPriority.MONITOR)
+    // Runs before the session is closed at MONITOR
+    @EventHandler(priority = EventPriority.HIGHEST)
     public void onPlayerQuit(PlayerQuitEvent event) {
-        BedrockConnection connection = connections.remove(event.getPlayer().getUniqueId());
+        PlayerSession session = plugin.getSessionManager().getSession(event.getPlayer());
+        BedrockConnection connection = session != null ? session.getBedrockConnection() : null;
         if (connection != null) {
             connection.setConnected(false);
-            deviceInfo.remove(connection.getDeviceId());
-            lastPositionUpdate.remove(event.getPlayer().getUniqueId());
 
             // Save player data
             plugin.getPlayerDataManager().savePlayerData(connection);
@@ -119,110 +103,56 @@ public class BedrockConnectionManager implements Listener {
         if (!event.hasChangedPosition())
             return;
 
-        UUID uuid = event.getPlayer().getUniqueId();
-        if (!connections.containsKey(uuid))
+        PlayerSession session = plugin.getSessionManager().getSession(event.getPlayer());
+        if (session == null || !session.isBedrock())
             return;
 
+        // The event already carries the destination; no need to ask the player for a fresh copy
         long currentTime = System.currentTimeMillis();
-        Long lastUpdate = lastPositionUpdate.get(uuid);
-
-        if (lastUpdate == null || currentTime - lastUpdate >= POSITION_UPDATE_INTERVAL) {
-            updatePlayerPosition(event.getPlayer());
-            lastPositionUpdate.put(uuid, currentTime);
-        }
-    }
-
-    private void updatePlayerPosition(Player player) {
-        BedrockConnection connection = connections.get(player.getUniqueId());
-        if (connection != null) {
-            connection.updatePosition(
-                    player.getWorld().getName(),
-                    player.getLocation().getX(),
-                    player.getLocation().getY(),
-                    player.getLocation().getZ(),
-                    player.getLocation().getYaw(),
-                    player.getLocation().getPitch());
+        if (currentTime - positions.getUpdatedAt(session.getIndex()) >= POSITION_UPDATE_INTERVAL) {
+            positions.update(session.getIndex(), event.getTo(), currentTime);
         }
     }
 
     private boolean isBedrockPlayer(Player player) {
         try {
-            Object connection = player.getClass().getMethod("getHandle").invoke(player);
-            return connection.getClass().getSimpleName().contains("Bedrock");
+            return plugin.getPlayerIntrospector().isBedrockPlayer(player);
         } catch (Exception e) {
             plugin.getLogger().log(Level.WARNING, "Failed to check if player is Bedrock", e);
             return false;
         }
     }
 
-    private String extractDeviceId(Player player) {
-        return extractDeviceInfo(player, "getDeviceId", "unknown");
-    }
-
-    private String extractDeviceModel(Player player) {
-        return extractDeviceInfo(player, "getDeviceModel", "unknown");
-    }
-
-    private String extractDeviceOS(Player player) {
-        return extractDeviceInfo(player, "getDeviceOS", "unknown");
-    }
-
-    private String extractClientVersion(Player player) {
-        return extractDeviceInfo(player, "getClientVersion", "unknown");
-    }
-
-    private String extractLanguage(Player player) {
-        return extractDeviceInfo(player, "getLanguage", "en_US");
+    public BedrockConnection getConnection(UUID uuid) {
+        PlayerSession session = plugin.getSessionManager().getSession(uuid);
+        return session != null ? session.getBedrockConnection() : null;
     }
 
-    private boolean isPremiumPlayer(Player player) {
-        try {
-            Object connection = player.getClass().getMethod("getHandle").invoke(player);
-            Object deviceInfo = connection.getClass().getMethod("getDeviceInfo").invoke(connection);
-            Method method = deviceInfo.getClass().getMethod("isPremium");
-            return (boolean) method.invoke(deviceInfo);
-        } catch (Exception e) {
-            plugin.getLogger().log(Level.WARNING, "Failed to check premium status", e);
+    // Copies the last tracked position into the given Location; false if none is known
+    public boolean getLastPosition(UUID uuid, Location into) {
+        PlayerSession session = plugin.getSessionManager().getSession(uuid);
+        if (session == null || !session.isBedrock() || !positions.hasPosition(session.getIndex()))
             return false;
-        }
-    }
-
-    private String extractDeviceInfo(Player player, String methodName, String defaultValue) {
-        try {
-            Object connection = player.getClass().getMethod("getHandle").invoke(player);
-            Object deviceInfo = connection.getClass().getMethod("getDeviceInfo").invoke(connection);
-            Method method = deviceInfo.getClass().getMethod(methodName);
-            return (String) method.invoke(deviceInfo);
-        } catch (Exception e) {
-            plugin.getLogger().log(Level.WARNING, "Failed to extract " + methodName, e);
-            return defaultValue;
-        }
-    }
-
-    private int getPlayerPing(Player player) {
-        try {
-            Object connection = player.getClass().getMethod("getHandle").invoke(player);
-            return (int) connection.getClass().getMethod("getPing").invoke(connection);
-        } catch (Exception e) {
-            plugin.getLogger().log(Level.WARNING, "Failed to get player ping", e);
-            return -1;
-        }
+        positions.getLocation(session.getIndex(), into);
+        return true;
     }
 
-    public BedrockConnection getConnection(UUID uuid) {
-        return connections.get(uuid);
+    public boolean isBedrockConnection(UUID uuid) {
+        return getConnection(uuid) != null;
     }
 
-    public boolean isBedrockConnection(UUID uuid) {
-        return connections.containsKey(uuid);
+    public PingSampler getPingSampler() {
+        return pingSampler;
     }
 
+    // Queues a save for every connected Bedrock player ahead of the shutdown barrier
     public void shutdown() {
-        if (pingTask != null) {
-            pingTask.cancel();
+        pingSampler.shutdown();
+        for (PlayerSession session : plugin.getSessionManager().getSessions()) {
+            BedrockConnection connection = session.getBedrockConnection();
+            if (connection != null && connection.isConnected()) {
+                plugin.getPlayerDataManager().savePlayerData(connection);
+            }
         }
-        connections.clear();
-        deviceInfo.clear();
-        lastPositionUpdate.clear();
     }
 }
\ No newline at end of file
@@ -5,21 +5,27 @@ import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.scheduler.BukkitTask;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 public class ConnectionGate implements Listener {
     private final XBedrockPlugin plugin;
-    private final Map<UUID, ConnectionInfo> connectionQueue;
-    private final Map<String, AtomicInteger> connectionAttempts;
-    private final Map<UUID, Long> lastConnectionTime;
+    private final AdmissionController admissionController;
+    private final TimerWheel releaseWheel;
+    private final SlidingWindowRateLimiter connectionAttempts;
+    private final SlidingWindowRateLimiter reconnects;
     private final AtomicInteger currentConnections;
     private BukkitTask queueProcessor;
+    private static final long CONNECTION_RELEASE_DELAY = 6000L; // 5 minutes in ticks
+    private static final long CONNECTION_ATTEMPT_WINDOW = 300000; // 5 minutes
+    private static final int RATE_LIMITER_CAPACITY = 8192;
+    private static final long RECONNECT_WINDOW = 1000; // 1 second
+    private static final String LIMITED_MESSAGE = "§cToo many connection attempts. Please try again later.";
 
     // Configuration
     private int maxConnectionsPerSecond;
@@ -31,13 +37,15 @@ public class ConnectionGate implements Listener {
 
     public ConnectionGate(XBedrockPlugin plugin) {
         this.plugin = plugin;
-        this.connectionQueue = new ConcurrentHashMap<>();
-        this.connectionAttempts = new ConcurrentHashMap<>();
-        this.lastConnectionTime = new ConcurrentHashMap<>();
+        this.reconnects = new SlidingWindowRateLimiter(1, RECONNECT_WINDOW, RATE_LIMITER_CAPACITY);
         this.currentConnections = new AtomicInteger(0);
 
         // Load configuration
         loadConfig();
+        this.connectionAttempts = new SlidingWindowRateLimiter(maxConnectionsPerIP, CONNECTION_ATTEMPT_WINDOW,
+                RATE_LIMITER_CAPACITY);
+        this.admissionController = new AdmissionController(maxQueueSize);
+        this.releaseWheel = new TimerWheel(512);
 
         // Register events
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
@@ -68,31 +76,13 @@ public class ConnectionGate implements Listener {
 
     private void startQueueProcessor() {
         queueProcessor = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
-            if (connectionQueue.isEmpty())
-                return;
-
             int currentHour = Calendar.getInstance().get(Calendar.HOUR_OF_DAY);
             int maxConnections = isPeakHour(currentHour) ? maxConnectionsPerSecond * peakHourMultiplier
                     : maxConnectionsPerSecond;
 
-            int processed = 0;
-            Iterator<Map.Entry<UUID, ConnectionInfo>> iterator = connectionQueue.entrySet().iterator();
-
-            while (iterator.hasNext() && processed < maxConnections) {
-                Map.Entry<UUID, ConnectionInfo> entry = iterator.next();
-                ConnectionInfo info = entry.getValue();
-
-                if (System.currentTimeMillis() - info.getQueueTime() > 30000) { // 30 second timeout
-                    iterator.remove();
-                    continue;
-                }
-
-                if (canConnect(info)) {
-                    processConnection(info);
-                    iterator.remove();
-                    processed++;
-                }
-            }
+            // Refill for the ticks elapsed since the last run, allowing at most one second of burst
+            admissionController.tick(maxConnections * queueProcessInterval / 20.0, maxConnections);
+            releaseWheel.advance();
         }, 0L, queueProcessInterval);
     }
 
@@ -100,44 +90,88 @@ public class ConnectionGate implements Listener {
         return peakHours.contains(hour);
     }
 
+    public void onPreLogin(AsyncPlayerPreLoginEvent event, DeviceProfile profile) {
+        ConnectionInfo info = new ConnectionInfo(
+                event.getUniqueId(),
+                event.getName(),
+                event.getAddress(),
+                System.currentTimeMillis());
+        info.setDeviceProfile(profile);
+
+        switch (admit(info)) {
+            case FULL:
+                event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_FULL,
+                        "§cServer is full. Please try again later.");
+                break;
+            case QUEUED:
+                event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, getQueueMessage(info));
+                break;
+            case LIMITED:
+                event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, LIMITED_MESSAGE);
+                break;
+            default:
+                break;
+        }
+    }
+
     @EventHandler
     public void onPlayerLogin(PlayerLoginEvent event) {
+        // Players already checked during async pre-login skip the gate here
+        LoginPipeline.PreparedLogin prepared = plugin.getLoginPipeline()
+                .getPreparedLogin(event.getPlayer().getUniqueId());
+        if (prepared != null && prepared.isBedrock())
+            return;
         if (!isBedrockPlayer(event.getPlayer()))
             return;
 
-        String address = event.getAddress().getHostAddress();
         ConnectionInfo info = new ConnectionInfo(
                 event.getPlayer().getUniqueId(),
                 event.getPlayer().getName(),
-                address,
+                event.getAddress(),
                 System.currentTimeMillis());
 
-        if (!canConnect(info)) {
-            if (connectionQueue.size() >= maxQueueSize) {
+        switch (admit(info)) {
+            case FULL:
                 event.disallow(PlayerLoginEvent.Result.KICK_FULL,
                         "§cServer is full. Please try again later.");
-                return;
-            }
+                break;
+            case QUEUED:
+                info.setDeviceProfile(DeviceProfile.capture(event.getPlayer(), plugin.getPlayerIntrospector()));
+                event.disallow(PlayerLoginEvent.Result.KICK_OTHER, getQueueMessage(info));
+                break;
+            case LIMITED:
+                event.disallow(PlayerLoginEvent.Result.KICK_OTHER, LIMITED_MESSAGE);
+                break;
+            default:
+                break;
+        }
+    }
 
-            connectionQueue.put(event.getPlayer().getUniqueId(), info);
-            event.disallow(PlayerLoginEvent.Result.KICK_OTHER,
-                    "§aYou have been placed in queue. Position: " +
-                            connectionQueue.size() + "/" + maxQueueSize);
+    private AdmissionController.Decision admit(ConnectionInfo info) {
+        if (!canConnect(info)) {
+            return AdmissionController.Decision.LIMITED;
         }
+
+        AdmissionController.Decision decision = admissionController.admit(info);
+        if (decision == AdmissionController.Decision.ADMITTED) {
+            processConnection(info);
+        }
+        return decision;
     }
 
-    private boolean canConnect(ConnectionInfo info) {
-        // Check connection attempts
-        AtomicInteger attempts = connectionAttempts.computeIfAbsent(
-                info.getAddress(), k -> new AtomicInteger(0));
+    private String getQueueMessage(ConnectionInfo info) {
+        return "§aYou have been placed in queue. Position: " +
+                admissionController.getPosition(info.getUuid()) + "/" + admissionController.getMaxQueueSize();
+    }
 
-        if (attempts.get() >= maxConnectionsPerIP) {
+    private boolean canConnect(ConnectionInfo info) {
+        // Check connections from this address within the sliding window
+        if (connectionAttempts.isLimited(info.getInetAddress())) {
             return false;
         }
 
-        // Check last connection time
-        Long lastTime = lastConnectionTime.get(info.getUuid());
-        if (lastTime != null && System.currentTimeMillis() - lastTime < 1000) {
+        // Check last connection time; expires on its own, so nothing is kept per UUID after quit
+        if (reconnects.isLimited(SlidingWindowRateLimiter.compactKey(info.getUuid()))) {
             return false;
         }
 
@@ -146,20 +180,17 @@ public class ConnectionGate implements Listener {
 
     private void processConnection(ConnectionInfo info) {
         currentConnections.incrementAndGet();
-        connectionAttempts.get(info.getAddress()).incrementAndGet();
-        lastConnectionTime.put(info.getUuid(), System.currentTimeMillis());
-
-        // Schedule cleanup
-        Bukkit.getScheduler().runTaskLater(plugin, () -> {
-            currentConnections.decrementAndGet();
-            connectionAttempts.get(info.getAddress()).decrementAndGet();
-        }, 6000L); // 5 minutes
+        connectionAttempts.record(info.getInetAddress());
+        reconnects.record(SlidingWindowRateLimiter.compactKey(info.getUuid()));
+
+        // Per-address attempts expire with the sliding window; only the global counter needs a release
+        releaseWheel.schedule(currentConnections::decrementAndGet,
+                Math.max(1, CONNECTION_RELEASE_DELAY / queueProcessInterval));
     }
 
     private boolean isBedrockPlayer(Player player) {
         try {
-            Object connection = player.getClass().getMethod("getHandle").invoke(player);
-            return connection.getClass().getSimpleName().contains("Bedrock");
+            return plugin.getPlayerIntrospector().isBedrockPlayer(player);
         } catch (Exception e) {
             plugin.getLogger().log(Level.WARNING, "Failed to check if player is Bedrock", e);
             return false;
@@ -170,10 +201,14 @@ public class ConnectionGate implements Listener {
         if (queueProcessor != null) {
             queueProcessor.cancel();
         }
+        admissionController.clear();
+        releaseWheel.clear();
+        connectionAttempts.clear();
+        reconnects.clear();
     }
 
     public int getQueueSize() {
-        return connectionQueue.size();
+        return admissionController.getQueueSize();
     }
 
     public int getCurrentConnections() {
@@ -182,5 +217,7 @@ public class ConnectionGate implements Listener {
 
     public void updateConfig() {
         loadConfig();
+        admissionController.setMaxQueueSize(maxQueueSize);
+        connectionAttempts.setLimit(maxConnectionsPerIP);
     }
 }
\ No newline at end of file
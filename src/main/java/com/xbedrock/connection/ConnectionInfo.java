@@ -1,24 +1,24 @@
 package com.xbedrock.connection;
 
+import java.net.InetAddress;
 import java.util.UUID;
 
 public class ConnectionInfo {
     private final UUID uuid;
     private final String username;
     private final String address;
+    private final InetAddress inetAddress;
     private final long queueTime;
-    private String deviceId;
-    private String deviceModel;
-    private String deviceOS;
-    private String clientVersion;
-    private String language;
-    private boolean isPremium;
-
-    public ConnectionInfo(UUID uuid, String username, String address, long queueTime) {
+    private DeviceProfile deviceProfile;
+    private long ticket;
+
+    public ConnectionInfo(UUID uuid, String username, InetAddress address, long queueTime) {
         this.uuid = uuid;
         this.username = username;
-        this.address = address;
+        this.address = address.getHostAddress();
+        this.inetAddress = address;
         this.queueTime = queueTime;
+        this.deviceProfile = DeviceProfile.UNKNOWN;
     }
 
     public UUID getUuid() {
@@ -33,55 +33,51 @@ public class ConnectionInfo {
         return address;
     }
 
+    public InetAddress getInetAddress() {
+        return inetAddress;
+    }
+
     public long getQueueTime() {
         return queueTime;
     }
 
-    public String getDeviceId() {
-        return deviceId;
+    public long getTicket() {
+        return ticket;
     }
 
-    public void setDeviceId(String deviceId) {
-        this.deviceId = deviceId;
+    public void setTicket(long ticket) {
+        this.ticket = ticket;
     }
 
-    public String getDeviceModel() {
-        return deviceModel;
+    public DeviceProfile getDeviceProfile() {
+        return deviceProfile;
     }
 
-    public void setDeviceModel(String deviceModel) {
-        this.deviceModel = deviceModel;
+    public void setDeviceProfile(DeviceProfile deviceProfile) {
+        this.deviceProfile = deviceProfile;
     }
 
-    public String getDeviceOS() {
-        return deviceOS;
+    public String getDeviceId() {
+        return deviceProfile.getDeviceId();
     }
 
-    public void setDeviceOS(String deviceOS) {
-        this.deviceOS = deviceOS;
+    public String getDeviceModel() {
+        return deviceProfile.getDeviceModel();
     }
 
-    public String getClientVersion() {
-        return clientVersion;
+    public String getDeviceOS() {
+        return deviceProfile.getDeviceOS();
     }
 
-    public void setClientVersion(String clientVersion) {
-        this.clientVersion = clientVersion;
+    public String getClientVersion() {
+        return deviceProfile.getClientVersion();
     }
 
     public String getLanguage() {
-        return language;
-    }
-
-    public void setLanguage(String language) {
-        this.language = language;
+        return deviceProfile.getLanguage();
     }
 
     public boolean isPremium() {
-        return isPremium;
-    }
-
-    public void setPremium(boolean premium) {
-        isPremium = premium;
+        return deviceProfile.isPremium();
     }
 }
\ No newline at end of file
@@ -13,7 +13,6 @@ import net.kyori.adventure.text.format.TextColor;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 
 import java.net.InetAddress;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -22,43 +21,45 @@ import java.util.concurrent.TimeUnit;
 public class ConnectionManager {
     private final XBedrockPlugin plugin;
     private final Map<UUID, ConnectionInfo> connectionInfoMap;
-    private final Map<String, Integer> connectionAttempts;
-    private final Map<String, Long> lastConnectionTime;
+    private final SlidingWindowRateLimiter connectionRate;
+    private final SlidingWindowRateLimiter connectionAttempts;
     private final MiniMessage miniMessage;
     private static final int MAX_CONNECTION_ATTEMPTS = 3;
     private static final long CONNECTION_TIMEOUT = 30000; // 30 seconds
     private static final long RATE_LIMIT_WINDOW = 60000; // 1 minute
     private static final int MAX_CONNECTIONS_PER_WINDOW = 5;
+    private static final long ATTEMPT_WINDOW = 300000; // 5 minutes
+    private static final int RATE_LIMITER_CAPACITY = 8192;
 
     public ConnectionManager(XBedrockPlugin plugin) {
         this.plugin = plugin;
         this.connectionInfoMap = new ConcurrentHashMap<>();
-        this.connectionAttempts = new HashMap<>();
-        this.lastConnectionTime = new HashMap<>();
+        this.connectionRate = new SlidingWindowRateLimiter(MAX_CONNECTIONS_PER_WINDOW, RATE_LIMIT_WINDOW,
+                RATE_LIMITER_CAPACITY);
+        this.connectionAttempts = new SlidingWindowRateLimiter(MAX_CONNECTION_ATTEMPTS, ATTEMPT_WINDOW,
+                RATE_LIMITER_CAPACITY);
         this.miniMessage = MiniMessage.miniMessage();
     }
 
     public void handleConnectionRequest(ConnectionRequestEvent event) {
-        String address = event.getConnection().getSocketAddress().getAddress().getHostAddress();
+        InetAddress address = event.getConnection().getSocketAddress().getAddress();
 
         // Check rate limiting
-        if (isRateLimited(address)) {
+        if (!connectionRate.tryAcquire(address)) {
             event.setCancelled(true);
             event.getConnection().disconnect(plugin.getMessageManager().parseMessage("rate_limited"));
             return;
         }
 
         // Check connection attempts
-        int attempts = connectionAttempts.getOrDefault(address, 0);
-        if (attempts >= MAX_CONNECTION_ATTEMPTS) {
+        if (connectionAttempts.isLimited(address)) {
             event.setCancelled(true);
             event.getConnection().disconnect(plugin.getMessageManager().parseMessage("too_many_attempts"));
             return;
         }
 
         // Update connection attempts
-        connectionAttempts.put(address, attempts + 1);
-        lastConnectionTime.put(address, System.currentTimeMillis());
+        connectionAttempts.record(address);
 
         // Create connection info
         ConnectionInfo info = new ConnectionInfo(event.getConnection());
@@ -77,8 +78,7 @@ public class ConnectionManager {
             info.setConnectionTime(System.currentTimeMillis());
 
             // Reset connection attempts
-            String address = event.getConnection().getSocketAddress().getAddress().getHostAddress();
-            connectionAttempts.remove(address);
+            connectionAttempts.reset(event.getConnection().getSocketAddress().getAddress());
 
             // Send welcome message
             event.getConnection().sendMessage(plugin.getMessageManager().parseMessage("welcome"));
@@ -101,18 +101,6 @@ public class ConnectionManager {
         }
     }
 
-    private boolean isRateLimited(String address) {
-        long currentTime = System.currentTimeMillis();
-        long lastTime = lastConnectionTime.getOrDefault(address, 0L);
-
-        if (currentTime - lastTime > RATE_LIMIT_WINDOW) {
-            lastConnectionTime.remove(address);
-            return false;
-        }
-
-        return connectionAttempts.getOrDefault(address, 0) >= MAX_CONNECTIONS_PER_WINDOW;
-    }
-
     private void startConnectionTimeout(GeyserConnection connection) {
         Bukkit.getScheduler().runTaskLater(plugin, () -> {
             ConnectionInfo info = connectionInfoMap.get(connection.getAuthData().getUuid());
@@ -127,17 +115,13 @@ public class ConnectionManager {
         private final GeyserConnection connection;
         private boolean connected;
         private long connectionTime;
-        private String clientVersion;
-        private String deviceModel;
-        private String deviceOS;
+        private final DeviceProfile deviceProfile;
 
         public ConnectionInfo(GeyserConnection connection) {
             this.connection = connection;
             this.connected = false;
             this.connectionTime = 0;
-            this.clientVersion = connection.getClientVersion();
-            this.deviceModel = connection.getDeviceModel();
-            this.deviceOS = connection.getDeviceOS();
+            this.deviceProfile = DeviceProfile.fromConnection(connection);
         }
 
         public void cleanup() {
@@ -161,16 +145,20 @@ public class ConnectionManager {
             this.connectionTime = connectionTime;
         }
 
+        public DeviceProfile getDeviceProfile() {
+            return deviceProfile;
+        }
+
         public String getClientVersion() {
-            return clientVersion;
+            return deviceProfile.getClientVersion();
         }
 
         public String getDeviceModel() {
-            return deviceModel;
+            return deviceProfile.getDeviceModel();
         }
 
         public String getDeviceOS() {
-            return deviceOS;
+            return deviceProfile.getDeviceOS();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,168 @@
+package com.xbedrock.connection;
+
+import org.bukkit.entity.Player;
+import org.geysermc.geyser.api.GeyserApi;
+import org.geysermc.geyser.api.connection.GeyserConnection;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class DeviceProfile {
+    public static final DeviceProfile UNKNOWN = new DeviceProfile("unknown", "unknown", "unknown", "unknown", "en_US",
+            false);
+
+    // Model, OS, version and language repeat across thousands of players, so we keep one canonical copy
+    private static final int MAX_INTERNED_VALUES = 4096;
+    private static final Map<String, String> INTERNED_VALUES = new ConcurrentHashMap<>();
+
+    private final String deviceId;
+    private final String deviceModel;
+    private final String deviceOS;
+    private final String clientVersion;
+    private final String language;
+    private final boolean premium;
+
+    private DeviceProfile(String deviceId, String deviceModel, String deviceOS, String clientVersion,
+            String language, boolean premium) {
+        this.deviceId = deviceId;
+        this.deviceModel = deviceModel;
+        this.deviceOS = deviceOS;
+        this.clientVersion = clientVersion;
+        this.language = language;
+        this.premium = premium;
+    }
+
+    // The only way to build a profile, so null and empty values from Geyser, the handle or the
+    // stored record all normalise to "unknown" here and nowhere else
+    public static DeviceProfile of(String deviceId, String deviceModel, String deviceOS, String clientVersion,
+            String language, boolean premium) {
+        return new DeviceProfile(
+                valueOrDefault(deviceId, UNKNOWN.deviceId),
+                intern(valueOrDefault(deviceModel, UNKNOWN.deviceModel)),
+                intern(valueOrDefault(deviceOS, UNKNOWN.deviceOS)),
+                intern(valueOrDefault(clientVersion, UNKNOWN.clientVersion)),
+                intern(valueOrDefault(language, UNKNOWN.language)),
+                premium);
+    }
+
+    public static DeviceProfile capture(Player player, PlayerIntrospector introspector) {
+        GeyserConnection connection = GeyserApi.api().connectionByUuid(player.getUniqueId());
+        if (connection != null) {
+            return fromConnection(connection, introspector);
+        }
+        return fromHandle(player, introspector);
+    }
+
+    public static DeviceProfile fromConnection(GeyserConnection connection) {
+        return fromConnection(connection, null);
+    }
+
+    // Geyser's public API has no device id, model or premium flag. When the connection is Geyser's
+    // own session, the device id and model are read from its client data. Otherwise these stand in:
+    // the xuid for the device id, "unknown" for the model, and premium for "Xbox-authenticated"
+    // (a non-empty xuid).
+    public static DeviceProfile fromConnection(GeyserConnection connection, PlayerIntrospector introspector) {
+        String xuid = connection.xuid();
+        String deviceId = xuid;
+        String deviceModel = null;
+        if (introspector != null) {
+            try {
+                Object clientData = introspector.invokeGetter(connection, "getClientData");
+                deviceId = (String) introspector.invokeGetter(clientData, "getDeviceId");
+                deviceModel = (String) introspector.invokeGetter(clientData, "getDeviceModel");
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                // Not a GeyserSession; keep the substitutes
+                deviceId = xuid;
+                deviceModel = null;
+            }
+        }
+        return of(
+                deviceId,
+                deviceModel,
+                connection.platform().toString(),
+                connection.version(),
+                connection.languageCode(),
+                xuid != null && !xuid.isEmpty());
+    }
+
+    private static DeviceProfile fromHandle(Player player, PlayerIntrospector introspector) {
+        try {
+            // Walk handle -> device info once and read every field from the same object
+            Object deviceInfo = introspector.getDeviceInfo(player);
+            Object premium = introspector.invokeGetter(deviceInfo, "isPremium");
+            return of(
+                    (String) introspector.invokeGetter(deviceInfo, "getDeviceId"),
+                    (String) introspector.invokeGetter(deviceInfo, "getDeviceModel"),
+                    (String) introspector.invokeGetter(deviceInfo, "getDeviceOS"),
+                    (String) introspector.invokeGetter(deviceInfo, "getClientVersion"),
+                    (String) introspector.invokeGetter(deviceInfo, "getLanguage"),
+                    premium != null && (boolean) premium);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            return UNKNOWN;
+        }
+    }
+
+    private static String valueOrDefault(String value, String defaultValue) {
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    private static String intern(String value) {
+        String canonical = INTERNED_VALUES.get(value);
+        if (canonical != null) {
+            return canonical;
+        }
+        if (INTERNED_VALUES.size() >= MAX_INTERNED_VALUES) {
+            return value;
+        }
+        canonical = INTERNED_VALUES.putIfAbsent(value, value);
+        return canonical != null ? canonical : value;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public String getDeviceModel() {
+        return deviceModel;
+    }
+
+    public String getDeviceOS() {
+        return deviceOS;
+    }
+
+    public String getClientVersion() {
+        return clientVersion;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public boolean isPremium() {
+        return premium;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        DeviceProfile that = (DeviceProfile) o;
+        return premium == that.premium && deviceId.equals(that.deviceId) && deviceModel.equals(that.deviceModel)
+                && deviceOS.equals(that.deviceOS) && clientVersion.equals(that.clientVersion)
+                && language.equals(that.language);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(deviceId, deviceModel, deviceOS, clientVersion, language, premium);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DeviceProfile{id='%s', model='%s', os='%s', version='%s', language='%s', premium=%s}",
+                deviceId, deviceModel, deviceOS, clientVersion, language, premium);
+    }
+}
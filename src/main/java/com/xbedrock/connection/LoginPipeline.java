@@ -0,0 +1,171 @@
+package com.xbedrock.connection;
+
+import com.xbedrock.XBedrockPlugin;
+import com.xbedrock.player.PlayerData;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.geysermc.geyser.api.GeyserApi;
+import org.geysermc.geyser.api.connection.GeyserConnection;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+public class LoginPipeline implements Listener {
+    private final XBedrockPlugin plugin;
+    private final Map<UUID, CompletableFuture<PreparedLogin>> readyLogins;
+    private final ExecutorService loadExecutor;
+    private static final long PREPARE_TIMEOUT = 5000; // milliseconds
+    private static final int LOAD_THREADS = 2;
+
+    public LoginPipeline(XBedrockPlugin plugin) {
+        this.plugin = plugin;
+        this.readyLogins = new ConcurrentHashMap<>();
+        this.loadExecutor = Executors.newFixedThreadPool(LOAD_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "XBedrock-LoginLoader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Register events
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+    }
+
+    @EventHandler(priority = EventPriority.LOW)
+    public void onAsyncPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED)
+            return;
+
+        UUID uuid = event.getUniqueId();
+
+        // Start loading player data while the gate and device checks run on this thread
+        CompletableFuture<PlayerData> dataFuture = CompletableFuture.supplyAsync(
+                () -> plugin.getPlayerDataManager().preparePlayerData(uuid), loadExecutor);
+
+        // Stage 1 + 2: device profile capture and gate checks for Bedrock players
+        GeyserConnection connection = GeyserApi.api().connectionByUuid(uuid);
+        DeviceProfile profile = connection != null
+                ? DeviceProfile.fromConnection(connection, plugin.getPlayerIntrospector()) : null;
+        if (profile != null) {
+            plugin.getConnectionGate().onPreLogin(event, profile);
+            if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+                dataFuture.cancel(false);
+                return;
+            }
+        }
+
+        // Stage 3: player data loading, handed to the sync phase through the ready map
+        readyLogins.put(uuid, dataFuture.thenApply(data -> new PreparedLogin(uuid, profile, data)));
+    }
+
+    // Last priority that may still change the outcome
+    @EventHandler(priority = EventPriority.HIGHEST)
+    public void onAsyncPreLoginAwait(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED)
+            return;
+        CompletableFuture<PreparedLogin> future = readyLogins.get(event.getUniqueId());
+        if (future == null)
+            return;
+
+        // Wait here, off the main thread, so the sync login phase never blocks on disk
+        try {
+            future.get(PREPARE_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to prepare login for " + event.getName(), e);
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, "§cFailed to load your player data");
+        }
+    }
+
+    // Cleanup only; a later plugin may still have refused the login
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPreLoginComplete(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            CompletableFuture<PreparedLogin> future = readyLogins.remove(event.getUniqueId());
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        PreparedLogin prepared = getPreparedLogin(event.getPlayer().getUniqueId());
+        if (prepared != null) {
+            plugin.getPlayerDataManager().registerPlayerData(prepared.getPlayerData());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLoginResult(PlayerLoginEvent event) {
+        if (event.getResult() == PlayerLoginEvent.Result.ALLOWED)
+            return;
+
+        UUID uuid = event.getPlayer().getUniqueId();
+        readyLogins.remove(uuid);
+        // Pinned at LOWEST, and a refused login never gets a quit event. Leave it pinned only if
+        // the same player is already online from an earlier login.
+        if (plugin.getServer().getPlayer(uuid) == null) {
+            plugin.getPlayerDataManager().getCache().unpin(uuid);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        readyLogins.remove(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        readyLogins.remove(event.getPlayer().getUniqueId());
+    }
+
+    public PreparedLogin getPreparedLogin(UUID uuid) {
+        CompletableFuture<PreparedLogin> future = readyLogins.get(uuid);
+        if (future == null || !future.isDone() || future.isCompletedExceptionally())
+            return null;
+        return future.join();
+    }
+
+    public void shutdown() {
+        readyLogins.clear();
+        loadExecutor.shutdownNow();
+    }
+
+    public static class PreparedLogin {
+        private final UUID uuid;
+        private final DeviceProfile deviceProfile;
+        private final PlayerData playerData;
+
+        public PreparedLogin(UUID uuid, DeviceProfile deviceProfile, PlayerData playerData) {
+            this.uuid = uuid;
+            this.deviceProfile = deviceProfile;
+            this.playerData = playerData;
+        }
+
+        public UUID getUuid() {
+            return uuid;
+        }
+
+        public boolean isBedrock() {
+            return deviceProfile != null;
+        }
+
+        public DeviceProfile getDeviceProfile() {
+            return deviceProfile;
+        }
+
+        public PlayerData getPlayerData() {
+            return playerData;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.xbedrock.connection;
+
+import com.xbedrock.XBedrockPlugin;
+import com.xbedrock.session.PlayerSession;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Samples every Bedrock player's ping off the main thread and keeps a rolling window per player,
+// plus histograms grouped by device OS and client version rebuilt on every pass
+public class PingSampler {
+    private static final long SAMPLE_INTERVAL = 20; // 1 second
+    private static final int HISTORY_SIZE = 64; // about a minute of samples
+    private static final int BUCKET_WIDTH = 5; // ms
+    private static final int BUCKET_COUNT = 201; // last bucket holds everything over 1 second
+
+    private final XBedrockPlugin plugin;
+    private volatile List<PingGroup> groups;
+    private BukkitTask task;
+
+    public PingSampler(XBedrockPlugin plugin) {
+        this.plugin = plugin;
+        this.groups = Collections.emptyList();
+    }
+
+    public void start() {
+        // Player#getPing only reads the latency the connection already tracks, so it is safe to call here
+        task = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::sample,
+                SAMPLE_INTERVAL, SAMPLE_INTERVAL);
+    }
+
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    // Largest groups first
+    public List<PingGroup> getGroups() {
+        return groups;
+    }
+
+    private void sample() {
+        Map<String, Map<String, PingGroup>> byPlatform = new HashMap<>();
+        for (PlayerSession session : plugin.getSessionManager().getSessions()) {
+            BedrockConnection connection = session.getBedrockConnection();
+            Player player = session.getPlayer();
+            if (connection == null || !player.isOnline())
+                continue;
+
+            int ping = player.getPing();
+            if (ping < 0)
+                continue;
+            connection.setPing(ping);
+
+            PingHistory history = session.getPingHistory();
+            history.record(ping);
+
+            // DeviceProfile interns OS and version, so the nested maps only ever see a few keys
+            DeviceProfile profile = connection.getDeviceProfile();
+            byPlatform.computeIfAbsent(profile.getDeviceOS(), os -> new HashMap<>())
+                    .computeIfAbsent(profile.getClientVersion(), version -> new PingGroup(profile.getDeviceOS(), version))
+                    .add(history);
+        }
+
+        List<PingGroup> next = new ArrayList<>();
+        byPlatform.values().forEach(versions -> next.addAll(versions.values()));
+        next.sort(Comparator.comparingInt(PingGroup::getPlayers).reversed());
+        groups = Collections.unmodifiableList(next);
+    }
+
+    // Per-player rolling window; written by the sampler, read by commands
+    public static class PingHistory {
+        private final int[] samples = new int[HISTORY_SIZE];
+        private int position;
+        private int count;
+        private int last = -1;
+        private double jitter;
+
+        public synchronized void record(int ping) {
+            // Smoothed mean deviation between consecutive samples, as in RFC 3550
+            if (last >= 0) {
+                jitter += (Math.abs(ping - last) - jitter) / 16.0;
+            }
+            last = ping;
+            samples[position] = ping;
+            position = (position + 1) % HISTORY_SIZE;
+            if (count < HISTORY_SIZE) {
+                count++;
+            }
+        }
+
+        public synchronized int getLast() {
+            return last;
+        }
+
+        public synchronized double getJitter() {
+            return jitter;
+        }
+
+        public synchronized int getSampleCount() {
+            return count;
+        }
+
+        public synchronized int getPercentile(double quantile) {
+            if (count == 0)
+                return -1;
+            int[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(quantile * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, rank))];
+        }
+
+        private synchronized void addTo(long[] buckets) {
+            for (int i = 0; i < count; i++) {
+                buckets[Math.min(samples[i] / BUCKET_WIDTH, BUCKET_COUNT - 1)]++;
+            }
+        }
+    }
+
+    // Immutable once published by the sampler
+    public static class PingGroup {
+        private final String deviceOS;
+        private final String clientVersion;
+        private final long[] buckets = new long[BUCKET_COUNT];
+        private int players;
+        private long samples;
+        private double jitterSum;
+
+        private PingGroup(String deviceOS, String clientVersion) {
+            this.deviceOS = deviceOS;
+            this.clientVersion = clientVersion;
+        }
+
+        private void add(PingHistory history) {
+            players++;
+            samples += history.getSampleCount();
+            jitterSum += history.getJitter();
+            history.addTo(buckets);
+        }
+
+        public String getDeviceOS() {
+            return deviceOS;
+        }
+
+        public String getClientVersion() {
+            return clientVersion;
+        }
+
+        public int getPlayers() {
+            return players;
+        }
+
+        public long getSamples() {
+            return samples;
+        }
+
+        public double getAverageJitter() {
+            return players == 0 ? 0 : jitterSum / players;
+        }
+
+        // Upper bound of the bucket holding the quantile, in ms
+        public int getPercentile(double quantile) {
+            long target = (long) Math.ceil(quantile * samples);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += buckets[i];
+                if (seen >= target && seen > 0)
+                    return (i + 1) * BUCKET_WIDTH;
+            }
+            return BUCKET_COUNT * BUCKET_WIDTH;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.xbedrock.connection;
+
+import com.xbedrock.XBedrockPlugin;
+import io.netty.channel.Channel;
+import org.bukkit.entity.Player;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class PlayerIntrospector {
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodHandle MISSING = MethodHandles.constant(Object.class, null);
+
+    private final XBedrockPlugin plugin;
+    private final MethodHandles.Lookup lookup;
+
+    // Accessors are resolved once per runtime class and reused for every player
+    private final ClassValue<Map<String, MethodHandle>> methodCache;
+    private final ClassValue<Map<String, MethodHandle>> fieldCache;
+    private final ClassValue<Boolean> bedrockHandleTypes;
+
+    public PlayerIntrospector(XBedrockPlugin plugin) {
+        this.plugin = plugin;
+        this.lookup = MethodHandles.lookup();
+        this.methodCache = new ClassValue<>() {
+            @Override
+            protected Map<String, MethodHandle> computeValue(Class<?> type) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+        this.fieldCache = new ClassValue<>() {
+            @Override
+            protected Map<String, MethodHandle> computeValue(Class<?> type) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+        this.bedrockHandleTypes = new ClassValue<>() {
+            @Override
+            protected Boolean computeValue(Class<?> type) {
+                return type.getSimpleName().contains("Bedrock");
+            }
+        };
+    }
+
+    public Object getHandle(Player player) throws ReflectiveOperationException {
+        return invokeGetter(player, "getHandle");
+    }
+
+    public boolean isBedrockPlayer(Player player) throws ReflectiveOperationException {
+        Object handle = getHandle(player);
+        return handle != null && bedrockHandleTypes.get(handle.getClass());
+    }
+
+    public Object getDeviceInfo(Player player) throws ReflectiveOperationException {
+        return invokeGetter(getHandle(player), "getDeviceInfo");
+    }
+
+    public Channel getChannel(Player player) throws ReflectiveOperationException {
+        Object networkManager = readField(getHandle(player), "b");
+        return (Channel) invokeGetter(networkManager, "getChannel");
+    }
+
+    public Object invokeGetter(Object target, String methodName) throws ReflectiveOperationException {
+        if (target == null)
+            throw new NoSuchMethodException(methodName + " on null target");
+
+        MethodHandle getter = methodCache.get(target.getClass())
+                .computeIfAbsent(methodName, name -> resolveMethod(target.getClass(), name));
+        if (getter == MISSING)
+            throw new NoSuchMethodException(target.getClass().getName() + "." + methodName + "()");
+
+        return invoke(getter, target);
+    }
+
+    public Object readField(Object target, String fieldName) throws ReflectiveOperationException {
+        if (target == null)
+            throw new NoSuchFieldException(fieldName + " on null target");
+
+        MethodHandle getter = fieldCache.get(target.getClass())
+                .computeIfAbsent(fieldName, name -> resolveField(target.getClass(), name));
+        if (getter == MISSING)
+            throw new NoSuchFieldException(target.getClass().getName() + "." + fieldName);
+
+        return invoke(getter, target);
+    }
+
+    private MethodHandle resolveMethod(Class<?> type, String name) {
+        try {
+            Method method = type.getMethod(name);
+            method.setAccessible(true);
+            return lookup.unreflect(method).asType(GETTER_TYPE);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            plugin.getLogger().fine("Could not resolve " + type.getName() + "." + name + "(): " + e.getMessage());
+            return MISSING;
+        }
+    }
+
+    private MethodHandle resolveField(Class<?> type, String name) {
+        try {
+            Field field = type.getField(name);
+            field.setAccessible(true);
+            return lookup.unreflectGetter(field).asType(GETTER_TYPE);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            plugin.getLogger().fine("Could not resolve field " + type.getName() + "." + name + ": " + e.getMessage());
+            return MISSING;
+        }
+    }
+
+    private static Object invoke(MethodHandle getter, Object target) throws ReflectiveOperationException {
+        try {
+            return (Object) getter.invokeExact(target);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new ReflectiveOperationException(t);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.xbedrock.connection;
+
+import java.net.InetAddress;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class SlidingWindowRateLimiter {
+    private static final long EMPTY = 0L;
+    private static final int PROBE_LIMIT = 8;
+    private static final int COUNT_BITS = 12;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long MAX_COUNT = COUNT_MASK;
+    private static final int WINDOW_SHIFT = 2 * COUNT_BITS;
+    private static final long WINDOW_MASK = (1L << 24) - 1;
+    private static final int FINGERPRINT_SHIFT = WINDOW_SHIFT + 24;
+
+    private final long windowMillis;
+    private volatile int limit;
+    private final int mask;
+
+    // Fixed-size open-addressed table: memory stays bounded no matter how many addresses connect.
+    // Each state packs a fingerprint of the owning key, the window id and the previous and current
+    // window counts, so one CAS updates all of them. A slot is re-keyed with a CAS on its key alone:
+    // the new owner's first update sees a foreign fingerprint and starts from zero, so no thread
+    // ever has to reset a state it does not own.
+    private final AtomicLongArray keys;
+    private final AtomicLongArray states;
+
+    public SlidingWindowRateLimiter(int limit, long windowMillis, int capacity) {
+        int size = Integer.highestOneBit(Math.max(PROBE_LIMIT, capacity - 1)) << 1;
+        this.limit = limit;
+        this.windowMillis = Math.max(1, windowMillis);
+        this.mask = size - 1;
+        this.keys = new AtomicLongArray(size);
+        this.states = new AtomicLongArray(size);
+    }
+
+    public boolean tryAcquire(InetAddress address) {
+        return tryAcquire(compactKey(address));
+    }
+
+    public boolean tryAcquire(long key) {
+        long now = System.currentTimeMillis();
+        int slot = claimSlot(key, now);
+        // Saturated with active keys: fail closed rather than evict someone else's counter
+        if (slot < 0)
+            return false;
+
+        long fingerprint = fingerprint(key);
+        long current;
+        long updated;
+        do {
+            current = states.get(slot);
+            long rolled = roll(current, fingerprint, now);
+            if (estimate(rolled, now) >= limit) {
+                return false;
+            }
+            updated = increment(rolled);
+        } while (!states.compareAndSet(slot, current, updated));
+        return true;
+    }
+
+    public void record(InetAddress address) {
+        record(compactKey(address));
+    }
+
+    public void record(long key) {
+        long now = System.currentTimeMillis();
+        int slot = claimSlot(key, now);
+        if (slot < 0)
+            return;
+
+        long fingerprint = fingerprint(key);
+        long current;
+        do {
+            current = states.get(slot);
+        } while (!states.compareAndSet(slot, current, increment(roll(current, fingerprint, now))));
+    }
+
+    public boolean isLimited(InetAddress address) {
+        return isLimited(compactKey(address));
+    }
+
+    // An unknown key is limited when there is no room to track it
+    public boolean isLimited(long key) {
+        long now = System.currentTimeMillis();
+        int slot = findSlot(key);
+        if (slot < 0)
+            return !hasRoom(key, now);
+        return estimate(roll(states.get(slot), fingerprint(key), now), now) >= limit;
+    }
+
+    public int getCount(InetAddress address) {
+        return getCount(compactKey(address));
+    }
+
+    public int getCount(long key) {
+        int slot = findSlot(key);
+        if (slot < 0)
+            return 0;
+        long now = System.currentTimeMillis();
+        return estimate(roll(states.get(slot), fingerprint(key), now), now);
+    }
+
+    public void reset(InetAddress address) {
+        long key = compactKey(address);
+        int slot = findSlot(key);
+        if (slot < 0)
+            return;
+
+        // Only clear the counts if the slot still belongs to this key
+        long fingerprint = fingerprint(key);
+        long current;
+        do {
+            current = states.get(slot);
+            if ((current >>> FINGERPRINT_SHIFT) != fingerprint)
+                return;
+        } while (!states.compareAndSet(slot, current, fingerprint << FINGERPRINT_SHIFT));
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public void clear() {
+        for (int i = 0; i <= mask; i++) {
+            keys.set(i, EMPTY);
+            states.set(i, 0L);
+        }
+    }
+
+    public static long compactKey(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        long key = 0;
+        // IPv4 uses the full address; IPv6 uses the /64 network prefix, since one host usually owns a whole /64
+        int length = Math.min(bytes.length, 8);
+        for (int i = 0; i < length; i++) {
+            key = (key << 8) | (bytes[i] & 0xFF);
+        }
+        // Tag the address family and keep zero free as the empty marker
+        return bytes.length == 4 ? key | (1L << 32) : (key ^ Long.MIN_VALUE) | 1L;
+    }
+
+    public static long compactKey(UUID uuid) {
+        // Keep zero free as the empty marker
+        return (uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits()) | 1L;
+    }
+
+    private int findSlot(long key) {
+        int index = spread(key);
+        for (int i = 0; i < PROBE_LIMIT; i++) {
+            int slot = (index + i) & mask;
+            if (keys.get(slot) == key)
+                return slot;
+        }
+        return -1;
+    }
+
+    // Returns -1 when every probed slot holds a key that is still counting
+    private int claimSlot(long key, long now) {
+        int index = spread(key);
+        for (int attempt = 0; attempt < 2; attempt++) {
+            for (int i = 0; i < PROBE_LIMIT; i++) {
+                int slot = (index + i) & mask;
+                long existing = keys.get(slot);
+                if (existing == key)
+                    return slot;
+                if (existing == EMPTY && keys.compareAndSet(slot, EMPTY, key))
+                    return slot;
+            }
+            // No free slot; take over one whose owner has gone idle
+            for (int i = 0; i < PROBE_LIMIT; i++) {
+                int slot = (index + i) & mask;
+                long existing = keys.get(slot);
+                if (existing != key && isIdle(slot, now) && keys.compareAndSet(slot, existing, key))
+                    return slot;
+            }
+        }
+        return -1;
+    }
+
+    private boolean hasRoom(long key, long now) {
+        int index = spread(key);
+        for (int i = 0; i < PROBE_LIMIT; i++) {
+            int slot = (index + i) & mask;
+            if (keys.get(slot) == EMPTY || isIdle(slot, now))
+                return true;
+        }
+        return false;
+    }
+
+    // Idle once both windows are empty, not merely once the estimate rounds down to zero
+    private boolean isIdle(int slot, long now) {
+        long state = states.get(slot);
+        return (roll(state, state >>> FINGERPRINT_SHIFT, now) & ((1L << WINDOW_SHIFT) - 1)) == 0;
+    }
+
+    // A state owned by another key counts as empty
+    private long roll(long state, long fingerprint, long now) {
+        long window = (now / windowMillis) & WINDOW_MASK;
+        long owner = fingerprint << FINGERPRINT_SHIFT;
+        if ((state >>> FINGERPRINT_SHIFT) != fingerprint)
+            return owner | (window << WINDOW_SHIFT);
+
+        long stateWindow = (state >>> WINDOW_SHIFT) & WINDOW_MASK;
+        if (stateWindow == window)
+            return state;
+
+        long currentCount = state & COUNT_MASK;
+        long previousCount = ((stateWindow + 1) & WINDOW_MASK) == window ? currentCount : 0;
+        return owner | (window << WINDOW_SHIFT) | (previousCount << COUNT_BITS);
+    }
+
+    private int estimate(long state, long now) {
+        long previous = (state >>> COUNT_BITS) & COUNT_MASK;
+        long current = state & COUNT_MASK;
+        // Weight the previous window by how much of it still overlaps the sliding window
+        double overlap = 1.0 - (double) (now % windowMillis) / windowMillis;
+        return (int) (current + previous * overlap);
+    }
+
+    private static long increment(long state) {
+        return (state & COUNT_MASK) < MAX_COUNT ? state + 1 : state;
+    }
+
+    // Never zero, so a cleared state never matches a live key
+    private static long fingerprint(long key) {
+        long h = key * 0xC2B2AE3D27D4EB4FL;
+        return (h >>> 48) | 1L;
+    }
+
+    private int spread(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,59 @@
+package com.xbedrock.connection;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TimerWheel {
+    private final Queue<Timeout>[] slots;
+    private final int mask;
+    private final AtomicLong currentTick;
+
+    @SuppressWarnings("unchecked")
+    public TimerWheel(int wheelSize) {
+        // Round up to a power of two so the slot index is a mask instead of a modulo
+        int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+        this.slots = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.mask = size - 1;
+        this.currentTick = new AtomicLong(0);
+    }
+
+    // Safe to call from any thread
+    public void schedule(Runnable task, long delayTicks) {
+        long deadline = currentTick.get() + Math.max(1, delayTicks);
+        slots[(int) (deadline & mask)].add(new Timeout(task, deadline));
+    }
+
+    // Called from a single thread once per tick
+    public void advance() {
+        long tick = currentTick.incrementAndGet();
+        Iterator<Timeout> iterator = slots[(int) (tick & mask)].iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.deadline <= tick) {
+                iterator.remove();
+                timeout.task.run();
+            }
+        }
+    }
+
+    public void clear() {
+        for (Queue<Timeout> slot : slots) {
+            slot.clear();
+        }
+    }
+
+    private static class Timeout {
+        private final Runnable task;
+        private final long deadline;
+
+        Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+    }
+}
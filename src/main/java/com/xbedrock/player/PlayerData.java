@@ -1,5 +1,6 @@
 package com.xbedrock.player;
 
+import com.xbedrock.connection.DeviceProfile;
 import org.bukkit.entity.Player;
 
 import java.util.HashMap;
@@ -12,6 +13,7 @@ public class PlayerData {
     private String prefix;
     private boolean cosmeticsEnabled;
     private final Map<String, Object> customData;
+    private DeviceProfile deviceProfile;
 
     public PlayerData(Player player) {
         this.uuid = player.getUniqueId();
@@ -19,6 +21,7 @@ public class PlayerData {
         this.prefix = "";
         this.cosmeticsEnabled = true;
         this.customData = new HashMap<>();
+        this.deviceProfile = DeviceProfile.UNKNOWN;
     }
 
     public PlayerData(UUID uuid) {
@@ -27,6 +30,7 @@ public class PlayerData {
         this.prefix = "";
         this.cosmeticsEnabled = true;
         this.customData = new HashMap<>();
+        this.deviceProfile = DeviceProfile.UNKNOWN;
     }
 
     public UUID getUuid() {
@@ -41,6 +45,10 @@ public class PlayerData {
         purchases.put(itemId, System.currentTimeMillis());
     }
 
+    public void addPurchase(String itemId, long timestamp) {
+        purchases.put(itemId, timestamp);
+    }
+
     public void removePurchase(String itemId) {
         purchases.remove(itemId);
     }
@@ -81,32 +89,40 @@ public class PlayerData {
         return customData;
     }
 
+    public DeviceProfile getDeviceProfile() {
+        return deviceProfile;
+    }
+
+    public void setDeviceProfile(DeviceProfile deviceProfile) {
+        this.deviceProfile = deviceProfile != null ? deviceProfile : DeviceProfile.UNKNOWN;
+    }
+
     // Bedrock-specific getters
     public String getBedrockUsername() {
         return (String) customData.getOrDefault("bedrock_username", "");
     }
 
     public String getDeviceId() {
-        return (String) customData.getOrDefault("device_id", "");
+        return deviceProfile.getDeviceId();
     }
 
     public String getDeviceModel() {
-        return (String) customData.getOrDefault("device_model", "");
+        return deviceProfile.getDeviceModel();
     }
 
     public String getDeviceOS() {
-        return (String) customData.getOrDefault("device_os", "");
+        return deviceProfile.getDeviceOS();
     }
 
     public String getClientVersion() {
-        return (String) customData.getOrDefault("client_version", "");
+        return deviceProfile.getClientVersion();
     }
 
     public String getLanguage() {
-        return (String) customData.getOrDefault("language", "en_US");
+        return deviceProfile.getLanguage();
     }
 
     public boolean isPremium() {
-        return (boolean) customData.getOrDefault("is_premium", false);
+        return deviceProfile.isPremium();
     }
 }
\ No newline at end of file
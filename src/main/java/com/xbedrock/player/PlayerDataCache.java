@@ -0,0 +1,348 @@
+package com.xbedrock.player;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// Online players are pinned and never evicted. Everyone else lives in a bounded W-TinyLFU cache:
+// new entries enter a small LRU window, and an entry leaving the window only displaces the
+// main space's LRU victim if a frequency sketch says it is used more often. The main space is
+// split into probation and protected segments so one-off lookups cannot flush regulars.
+// Entries not accessed within the expiry are dropped by expire().
+public class PlayerDataCache {
+    private static final double WINDOW_RATIO = 0.01;
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final Map<UUID, PlayerData> pinned;
+    private final long expireAfterAccess;
+    private final int windowMax;
+    private final int mainMax;
+    private final int protectedMax;
+
+    // Guarded by this
+    private final Map<UUID, Node> nodes;
+    private final LinkedHashMap<UUID, Node> window;
+    private final LinkedHashMap<UUID, Node> probation;
+    private final LinkedHashMap<UUID, Node> protectedSegment;
+    private final FrequencySketch sketch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public PlayerDataCache(int maximumSize, long expireAfterAccess) {
+        int size = Math.max(2, maximumSize);
+        this.pinned = new ConcurrentHashMap<>();
+        this.expireAfterAccess = expireAfterAccess;
+        this.windowMax = Math.max(1, (int) (size * WINDOW_RATIO));
+        this.mainMax = size - windowMax;
+        this.protectedMax = (int) (mainMax * PROTECTED_RATIO);
+        this.nodes = new HashMap<>();
+        this.window = new LinkedHashMap<>(16, 0.75f, true);
+        this.probation = new LinkedHashMap<>(16, 0.75f, true);
+        this.protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+        this.sketch = new FrequencySketch(size);
+    }
+
+    public PlayerData getIfPresent(UUID uuid) {
+        PlayerData data = pinned.get(uuid);
+        if (data == null) {
+            data = lookup(uuid, System.currentTimeMillis());
+        }
+        if (data != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return data;
+    }
+
+    // The loader runs outside the lock and may return null, which is not cached
+    public PlayerData get(UUID uuid, Function<UUID, PlayerData> loader) {
+        PlayerData data = getIfPresent(uuid);
+        if (data != null)
+            return data;
+
+        PlayerData loaded = loader.apply(uuid);
+        if (loaded == null)
+            return null;
+        synchronized (this) {
+            // Another thread may have loaded it first
+            PlayerData existing = pinned.get(uuid);
+            if (existing == null) {
+                existing = lookup(uuid, System.currentTimeMillis());
+            }
+            if (existing != null)
+                return existing;
+            insert(uuid, loaded, System.currentTimeMillis());
+            return loaded;
+        }
+    }
+
+    public PlayerData getPinned(UUID uuid) {
+        return pinned.get(uuid);
+    }
+
+    // Keeps the first pinned instance if there already is one, and returns whichever is pinned
+    public synchronized PlayerData pin(PlayerData data) {
+        PlayerData existing = pinned.putIfAbsent(data.getUuid(), data);
+        remove(data.getUuid());
+        return existing != null ? existing : data;
+    }
+
+    // Replaces whatever is cached for this player, pinned or not
+    public synchronized void put(PlayerData data) {
+        if (pinned.replace(data.getUuid(), data) != null)
+            return;
+        remove(data.getUuid());
+        insert(data.getUuid(), data, System.currentTimeMillis());
+    }
+
+    // Called on quit; the entry becomes evictable
+    public synchronized void unpin(UUID uuid) {
+        PlayerData data = pinned.remove(uuid);
+        if (data != null) {
+            insert(uuid, data, System.currentTimeMillis());
+        }
+    }
+
+    // Drops an offline player's entry so the next lookup reloads it; pinned entries are kept
+    public synchronized void invalidate(UUID uuid) {
+        remove(uuid);
+    }
+
+    public synchronized void invalidateAll() {
+        nodes.clear();
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+    }
+
+    public synchronized void expire() {
+        long cutoff = System.currentTimeMillis() - expireAfterAccess;
+        expire(window, cutoff);
+        expire(probation, cutoff);
+        expire(protectedSegment, cutoff);
+    }
+
+    public Collection<PlayerData> getPinnedData() {
+        return Collections.unmodifiableCollection(pinned.values());
+    }
+
+    public int getPinnedCount() {
+        return pinned.size();
+    }
+
+    public synchronized int getCachedCount() {
+        return nodes.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 1.0 : (double) hitCount / total;
+    }
+
+    public synchronized void clear() {
+        pinned.clear();
+        nodes.clear();
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+    }
+
+    private synchronized PlayerData lookup(UUID uuid, long now) {
+        Node node = nodes.get(uuid);
+        if (node == null)
+            return null;
+        if (now - node.lastAccess > expireAfterAccess) {
+            remove(uuid);
+            evictions.increment();
+            return null;
+        }
+
+        node.lastAccess = now;
+        sketch.increment(uuid);
+        switch (node.segment) {
+            case WINDOW:
+                window.get(uuid);
+                break;
+            case PROBATION:
+                // A second hit earns a place in the protected segment
+                probation.remove(uuid);
+                node.segment = PROTECTED;
+                protectedSegment.put(uuid, node);
+                if (protectedSegment.size() > protectedMax) {
+                    Node demoted = removeEldest(protectedSegment);
+                    demoted.segment = PROBATION;
+                    probation.put(demoted.uuid, demoted);
+                }
+                break;
+            default:
+                protectedSegment.get(uuid);
+                break;
+        }
+        return node.data;
+    }
+
+    private void insert(UUID uuid, PlayerData data, long now) {
+        Node node = new Node(uuid, data, now);
+        nodes.put(uuid, node);
+        window.put(uuid, node);
+        sketch.increment(uuid);
+        if (window.size() <= windowMax)
+            return;
+
+        // The window overflowed; its LRU entry competes for a place in the main space
+        Node candidate = removeEldest(window);
+        if (probation.size() + protectedSegment.size() < mainMax) {
+            candidate.segment = PROBATION;
+            probation.put(candidate.uuid, candidate);
+            return;
+        }
+
+        LinkedHashMap<UUID, Node> victims = !probation.isEmpty() ? probation : protectedSegment;
+        Node victim = victims.entrySet().iterator().next().getValue();
+        if (sketch.frequency(candidate.uuid) > sketch.frequency(victim.uuid)) {
+            victims.remove(victim.uuid);
+            nodes.remove(victim.uuid);
+            candidate.segment = PROBATION;
+            probation.put(candidate.uuid, candidate);
+        } else {
+            nodes.remove(candidate.uuid);
+        }
+        evictions.increment();
+    }
+
+    private void remove(UUID uuid) {
+        Node node = nodes.remove(uuid);
+        if (node == null)
+            return;
+        switch (node.segment) {
+            case WINDOW:
+                window.remove(uuid);
+                break;
+            case PROBATION:
+                probation.remove(uuid);
+                break;
+            default:
+                protectedSegment.remove(uuid);
+                break;
+        }
+    }
+
+    // Segments are in access order, so the expired entries are all at the head
+    private void expire(LinkedHashMap<UUID, Node> segment, long cutoff) {
+        Iterator<Node> iterator = segment.values().iterator();
+        while (iterator.hasNext()) {
+            Node node = iterator.next();
+            if (node.lastAccess >= cutoff)
+                break;
+            iterator.remove();
+            nodes.remove(node.uuid);
+            evictions.increment();
+        }
+    }
+
+    private static Node removeEldest(LinkedHashMap<UUID, Node> segment) {
+        Iterator<Node> iterator = segment.values().iterator();
+        Node eldest = iterator.next();
+        iterator.remove();
+        return eldest;
+    }
+
+    private static final class Node {
+        private final UUID uuid;
+        private final PlayerData data;
+        private long lastAccess;
+        private int segment;
+
+        private Node(UUID uuid, PlayerData data, long lastAccess) {
+            this.uuid = uuid;
+            this.data = data;
+            this.lastAccess = lastAccess;
+            this.segment = WINDOW;
+        }
+    }
+
+    // Count-min sketch with four rows of 4-bit saturating counters. Counts are halved once enough
+    // increments have been recorded, so popularity from last week does not outweigh today.
+    private static final class FrequencySketch {
+        private static final int ROWS = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = { 0x97CB3127, 0xC2B2AE35, 0x85EBCA6B, 0x27D4EB2F };
+
+        private final byte[][] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        private FrequencySketch(int maximumSize) {
+            int width = Integer.highestOneBit(Math.max(16, maximumSize) - 1) << 1;
+            this.counters = new byte[ROWS][width];
+            this.mask = width - 1;
+            this.sampleSize = 10 * maximumSize;
+        }
+
+        private void increment(UUID key) {
+            int hash = key.hashCode();
+            boolean added = false;
+            for (int row = 0; row < ROWS; row++) {
+                int index = indexOf(hash, row);
+                if (counters[row][index] < MAX_COUNT) {
+                    counters[row][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        private int frequency(UUID key) {
+            int hash = key.hashCode();
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < ROWS; row++) {
+                frequency = Math.min(frequency, counters[row][indexOf(hash, row)]);
+            }
+            return frequency;
+        }
+
+        private int indexOf(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        private void reset() {
+            for (byte[] row : counters) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>= 1;
+                }
+            }
+            additions /= 2;
+        }
+    }
+}
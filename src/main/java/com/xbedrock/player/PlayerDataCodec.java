@@ -0,0 +1,506 @@
+package com.xbedrock.player;
+
+import com.xbedrock.connection.DeviceProfile;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Binary encoding for PlayerData.
+//
+// Layout: magic, format version, string table, then tagged fields. A tag is
+// (field number << 3 | wire type), so a reader can skip fields it does not know and older
+// records simply lack fields added later. Every string (prefix, item ids, custom keys, device
+// values) is written once in the table and referenced by index.
+//
+// Records written before this format are JSON; decode() still reads them.
+public final class PlayerDataCodec {
+    public static final int VERSION = 1;
+    private static final byte MAGIC = (byte) 0xB7;
+
+    // Field numbers; never reuse a retired one
+    private static final int FIELD_PREFIX = 1;
+    private static final int FIELD_COSMETICS_ENABLED = 2;
+    private static final int FIELD_PURCHASES = 3;
+    private static final int FIELD_CUSTOM = 4;
+    private static final int FIELD_DEVICE = 5;
+
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_FIXED64 = 1;
+    private static final int WIRE_BYTES = 2;
+
+    // Custom value types
+    private static final int VALUE_NULL = 0;
+    private static final int VALUE_STRING = 1;
+    private static final int VALUE_LONG = 2;
+    private static final int VALUE_DOUBLE = 3;
+    private static final int VALUE_BOOLEAN = 4;
+    private static final int VALUE_MAP = 5;
+    private static final int VALUE_LIST = 6;
+
+    private PlayerDataCodec() {
+    }
+
+    public static byte[] encode(PlayerData data) {
+        StringTable strings = new StringTable();
+        Writer body = new Writer(256);
+
+        body.writeTag(FIELD_PREFIX, WIRE_VARINT);
+        body.writeVarint(strings.indexOf(data.getPrefix()));
+        body.writeTag(FIELD_COSMETICS_ENABLED, WIRE_VARINT);
+        body.writeVarint(data.isCosmeticsEnabled() ? 1 : 0);
+
+        if (!data.getPurchases().isEmpty()) {
+            Writer purchases = new Writer(data.getPurchases().size() * 8);
+            purchases.writeVarint(data.getPurchases().size());
+            for (Map.Entry<String, Long> entry : data.getPurchases().entrySet()) {
+                purchases.writeVarint(strings.indexOf(entry.getKey()));
+                purchases.writeVarint(entry.getValue());
+            }
+            body.writeTag(FIELD_PURCHASES, WIRE_BYTES);
+            body.writeBlock(purchases);
+        }
+
+        if (!data.getCustomData().isEmpty()) {
+            Writer custom = new Writer(64);
+            writeMap(custom, strings, data.getCustomData());
+            body.writeTag(FIELD_CUSTOM, WIRE_BYTES);
+            body.writeBlock(custom);
+        }
+
+        DeviceProfile profile = data.getDeviceProfile();
+        if (profile != DeviceProfile.UNKNOWN) {
+            Writer device = new Writer(16);
+            device.writeVarint(strings.indexOf(profile.getDeviceId()));
+            device.writeVarint(strings.indexOf(profile.getDeviceModel()));
+            device.writeVarint(strings.indexOf(profile.getDeviceOS()));
+            device.writeVarint(strings.indexOf(profile.getClientVersion()));
+            device.writeVarint(strings.indexOf(profile.getLanguage()));
+            device.writeVarint(profile.isPremium() ? 1 : 0);
+            body.writeTag(FIELD_DEVICE, WIRE_BYTES);
+            body.writeBlock(device);
+        }
+
+        Writer out = new Writer(body.size + strings.size() * 16 + 8);
+        out.writeByte(MAGIC);
+        out.writeVarint(VERSION);
+        out.writeVarint(strings.size());
+        for (String value : strings.values) {
+            out.writeString(value);
+        }
+        out.writeBytes(body.buffer, 0, body.size);
+        return out.toByteArray();
+    }
+
+    public static PlayerData decode(UUID uuid, byte[] encoded) throws IOException {
+        if (encoded.length > 0 && encoded[0] != MAGIC)
+            return decodeJson(uuid, encoded);
+
+        Reader in = new Reader(encoded, 1, encoded.length);
+        int version = (int) in.readVarint();
+        if (version > VERSION)
+            throw new IOException("Player data format " + version + " is newer than supported " + VERSION);
+
+        String[] strings = new String[in.readCount()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readString();
+        }
+
+        PlayerData data = new PlayerData(uuid);
+        while (in.hasRemaining()) {
+            int tag = (int) in.readVarint();
+            int field = tag >>> 3;
+            int wireType = tag & 7;
+            switch (field) {
+                case FIELD_PREFIX:
+                    data.setPrefix(strings[in.readIndex(strings)]);
+                    break;
+                case FIELD_COSMETICS_ENABLED:
+                    data.setCosmeticsEnabled(in.readVarint() != 0);
+                    break;
+                case FIELD_PURCHASES: {
+                    Reader purchases = in.readBlock();
+                    int count = purchases.readCount();
+                    for (int i = 0; i < count; i++) {
+                        String itemId = strings[purchases.readIndex(strings)];
+                        data.addPurchase(itemId, purchases.readVarint());
+                    }
+                    break;
+                }
+                case FIELD_CUSTOM: {
+                    Reader custom = in.readBlock();
+                    int count = custom.readCount();
+                    for (int i = 0; i < count; i++) {
+                        String key = strings[custom.readIndex(strings)];
+                        data.setCustomValue(key, readValue(custom, strings));
+                    }
+                    break;
+                }
+                case FIELD_DEVICE: {
+                    Reader device = in.readBlock();
+                    data.setDeviceProfile(DeviceProfile.of(
+                            strings[device.readIndex(strings)],
+                            strings[device.readIndex(strings)],
+                            strings[device.readIndex(strings)],
+                            strings[device.readIndex(strings)],
+                            strings[device.readIndex(strings)],
+                            device.readVarint() != 0));
+                    break;
+                }
+                default:
+                    // Written by a newer version; skip it
+                    in.skip(wireType);
+                    break;
+            }
+        }
+        return data;
+    }
+
+    // Readable form for debugging and exports; decode() accepts it back
+    public static JSONObject toJson(PlayerData data) {
+        JSONObject json = new JSONObject();
+
+        // Save basic data
+        json.put("prefix", data.getPrefix());
+        json.put("cosmeticsEnabled", data.isCosmeticsEnabled());
+
+        // Save purchases
+        JSONObject purchases = new JSONObject();
+        purchases.putAll(data.getPurchases());
+        json.put("purchases", purchases);
+
+        // Save custom data
+        JSONObject custom = new JSONObject();
+        custom.putAll(data.getCustomData());
+        json.put("custom", custom);
+
+        DeviceProfile profile = data.getDeviceProfile();
+        if (profile != DeviceProfile.UNKNOWN) {
+            JSONObject device = new JSONObject();
+            device.put("id", profile.getDeviceId());
+            device.put("model", profile.getDeviceModel());
+            device.put("os", profile.getDeviceOS());
+            device.put("version", profile.getClientVersion());
+            device.put("language", profile.getLanguage());
+            device.put("premium", profile.isPremium());
+            json.put("device", device);
+        }
+        return json;
+    }
+
+    private static PlayerData decodeJson(UUID uuid, byte[] encoded) throws IOException {
+        JSONObject json;
+        try {
+            // JSONParser is not thread-safe and this may run on a login loader thread
+            json = (JSONObject) new JSONParser().parse(new String(encoded, StandardCharsets.UTF_8));
+        } catch (ParseException | ClassCastException e) {
+            throw new IOException("Malformed player data", e);
+        }
+        PlayerData data = new PlayerData(uuid);
+
+        // Load basic data
+        String prefix = (String) json.get("prefix");
+        if (prefix != null) {
+            data.setPrefix(prefix);
+        }
+        Object cosmeticsEnabled = json.get("cosmeticsEnabled");
+        if (cosmeticsEnabled != null) {
+            data.setCosmeticsEnabled((boolean) cosmeticsEnabled);
+        }
+
+        // Load purchases
+        JSONObject purchases = (JSONObject) json.get("purchases");
+        if (purchases != null) {
+            for (Object key : purchases.keySet()) {
+                String itemId = (String) key;
+                long purchaseTime = ((Number) purchases.get(itemId)).longValue();
+                data.addPurchase(itemId, purchaseTime);
+            }
+        }
+
+        // Load custom data
+        JSONObject custom = (JSONObject) json.get("custom");
+        if (custom != null) {
+            for (Object key : custom.keySet()) {
+                data.setCustomValue((String) key, custom.get(key));
+            }
+        }
+
+        JSONObject device = (JSONObject) json.get("device");
+        if (device != null) {
+            Object premium = device.get("premium");
+            data.setDeviceProfile(DeviceProfile.of(
+                    (String) device.get("id"),
+                    (String) device.get("model"),
+                    (String) device.get("os"),
+                    (String) device.get("version"),
+                    (String) device.get("language"),
+                    premium != null && (boolean) premium));
+        }
+        return data;
+    }
+
+    private static void writeMap(Writer out, StringTable strings, Map<?, ?> map) {
+        out.writeVarint(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            out.writeVarint(strings.indexOf(String.valueOf(entry.getKey())));
+            writeValue(out, strings, entry.getValue());
+        }
+    }
+
+    private static void writeValue(Writer out, StringTable strings, Object value) {
+        if (value == null) {
+            out.writeVarint(VALUE_NULL);
+        } else if (value instanceof Boolean) {
+            out.writeVarint(VALUE_BOOLEAN);
+            out.writeVarint((Boolean) value ? 1 : 0);
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeVarint(VALUE_DOUBLE);
+            out.writeFixed64(Double.doubleToRawLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof Number) {
+            // json-simple reads every integer back as a Long, so widen here too
+            out.writeVarint(VALUE_LONG);
+            out.writeZigZag(((Number) value).longValue());
+        } else if (value instanceof Map) {
+            out.writeVarint(VALUE_MAP);
+            writeMap(out, strings, (Map<?, ?>) value);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeVarint(VALUE_LIST);
+            out.writeVarint(list.size());
+            for (Object element : list) {
+                writeValue(out, strings, element);
+            }
+        } else {
+            out.writeVarint(VALUE_STRING);
+            out.writeVarint(strings.indexOf(value.toString()));
+        }
+    }
+
+    // Maps and lists come back as the json-simple types the JSON path produced
+    private static JSONObject readMap(Reader in, String[] strings) throws IOException {
+        int count = in.readCount();
+        JSONObject map = new JSONObject();
+        for (int i = 0; i < count; i++) {
+            String key = strings[in.readIndex(strings)];
+            map.put(key, readValue(in, strings));
+        }
+        return map;
+    }
+
+    private static Object readValue(Reader in, String[] strings) throws IOException {
+        int type = (int) in.readVarint();
+        switch (type) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_STRING:
+                return strings[in.readIndex(strings)];
+            case VALUE_LONG:
+                return in.readZigZag();
+            case VALUE_DOUBLE:
+                return Double.longBitsToDouble(in.readFixed64());
+            case VALUE_BOOLEAN:
+                return in.readVarint() != 0;
+            case VALUE_MAP:
+                return readMap(in, strings);
+            case VALUE_LIST: {
+                int count = in.readCount();
+                JSONArray list = new JSONArray();
+                for (int i = 0; i < count; i++) {
+                    list.add(readValue(in, strings));
+                }
+                return list;
+            }
+            default:
+                throw new IOException("Unknown custom value type " + type);
+        }
+    }
+
+    private static final class StringTable {
+        private final Map<String, Integer> indices = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        private int indexOf(String value) {
+            String key = value != null ? value : "";
+            Integer index = indices.get(key);
+            if (index == null) {
+                index = values.size();
+                indices.put(key, index);
+                values.add(key);
+            }
+            return index;
+        }
+
+        private int size() {
+            return values.size();
+        }
+    }
+
+    private static final class Writer {
+        private byte[] buffer;
+        private int size;
+
+        private Writer(int capacity) {
+            this.buffer = new byte[Math.max(16, capacity)];
+        }
+
+        private void writeByte(int value) {
+            ensure(1);
+            buffer[size++] = (byte) value;
+        }
+
+        private void writeBytes(byte[] bytes, int offset, int length) {
+            ensure(length);
+            System.arraycopy(bytes, offset, buffer, size, length);
+            size += length;
+        }
+
+        private void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        private void writeZigZag(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        private void writeFixed64(long value) {
+            ensure(8);
+            for (int i = 0; i < 8; i++) {
+                buffer[size++] = (byte) (value >>> (i * 8));
+            }
+        }
+
+        private void writeTag(int field, int wireType) {
+            writeVarint((field << 3) | wireType);
+        }
+
+        private void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            writeBytes(bytes, 0, bytes.length);
+        }
+
+        private void writeBlock(Writer block) {
+            writeVarint(block.size);
+            writeBytes(block.buffer, 0, block.size);
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buffer;
+        private final int limit;
+        private int position;
+
+        private Reader(byte[] buffer, int position, int limit) {
+            this.buffer = buffer;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        private boolean hasRemaining() {
+            return position < limit;
+        }
+
+        private long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= limit)
+                    throw new IOException("Truncated player data");
+                byte b = buffer[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        private long readZigZag() throws IOException {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private long readFixed64() throws IOException {
+            require(8);
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value |= (buffer[position++] & 0xFFL) << (i * 8);
+            }
+            return value;
+        }
+
+        // Counts and lengths are bounded by what is left, so corrupt input cannot force huge allocations
+        private int readCount() throws IOException {
+            long count = readVarint();
+            if (count < 0 || count > limit - position)
+                throw new IOException("Invalid length " + count);
+            return (int) count;
+        }
+
+        private int readIndex(String[] strings) throws IOException {
+            long index = readVarint();
+            if (index < 0 || index >= strings.length)
+                throw new IOException("Invalid string index " + index);
+            return (int) index;
+        }
+
+        private String readString() throws IOException {
+            int length = readCount();
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private Reader readBlock() throws IOException {
+            int length = readCount();
+            Reader block = new Reader(buffer, position, position + length);
+            position += length;
+            return block;
+        }
+
+        private void skip(int wireType) throws IOException {
+            switch (wireType) {
+                case WIRE_VARINT:
+                    readVarint();
+                    break;
+                case WIRE_FIXED64:
+                    require(8);
+                    position += 8;
+                    break;
+                case WIRE_BYTES:
+                    position += readCount();
+                    break;
+                default:
+                    throw new IOException("Unknown wire type " + wireType);
+            }
+        }
+
+        private void require(int bytes) throws IOException {
+            if (limit - position < bytes)
+                throw new IOException("Truncated player data");
+        }
+    }
+}
@@ -2,172 +2,170 @@ package com.xbedrock.player;
 
 import com.xbedrock.XBedrockPlugin;
 import com.xbedrock.connection.BedrockConnection;
+import com.xbedrock.player.storage.FileStorage;
+import com.xbedrock.player.storage.PlayerDataStorage;
+import com.xbedrock.player.storage.SegmentStorage;
+import com.xbedrock.player.storage.SqliteStorage;
+import com.xbedrock.player.storage.WriteBehindQueue;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
-import org.geysermc.geyser.api.connection.GeyserConnection;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
 
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 public class PlayerDataManager implements Listener {
     private final XBedrockPlugin plugin;
-    private final Map<UUID, PlayerData> playerData;
+    private final PlayerDataCache cache;
     private final File dataFolder;
-    private final JSONParser jsonParser;
+    private final WriteBehindQueue saveQueue;
+    private static final long DEFAULT_FLUSH_INTERVAL = 20; // 1 second
+    private static final int DEFAULT_BATCH_SIZE = 64;
+    private static final int DEFAULT_CACHE_SIZE = 10000;
+    private static final long DEFAULT_CACHE_EXPIRY = 600; // seconds
+    private static final long CACHE_CLEANUP_INTERVAL = 1200; // 1 minute
 
     public PlayerDataManager(XBedrockPlugin plugin) {
         this.plugin = plugin;
-        this.playerData = new ConcurrentHashMap<>();
+        // Online players are pinned; offline lookups are bounded and expire
+        this.cache = new PlayerDataCache(
+                plugin.getConfig().getInt("storage.cache-size", DEFAULT_CACHE_SIZE),
+                TimeUnit.SECONDS.toMillis(plugin.getConfig().getLong("storage.cache-expiry", DEFAULT_CACHE_EXPIRY)));
+        plugin.getServer().getScheduler().runTaskTimer(plugin, cache::expire,
+                CACHE_CLEANUP_INTERVAL, CACHE_CLEANUP_INTERVAL);
         this.dataFolder = new File(plugin.getDataFolder(), "playerdata");
-        this.jsonParser = new JSONParser();
 
-        if (!dataFolder.exists()) {
-            dataFolder.mkdirs();
-        }
+        // Saves are queued and written in batches off the main thread
+        this.saveQueue = new WriteBehindQueue(plugin, openStorage(),
+                PlayerDataCodec::encode,
+                plugin.getConfig().getInt("storage.batch-size", DEFAULT_BATCH_SIZE));
+        saveQueue.start(Math.max(1, plugin.getConfig().getLong("storage.flush-interval", DEFAULT_FLUSH_INTERVAL)));
+
+        // Plugins are disabled before players are kicked, so quit handlers never see a restart.
+        // Everyone still online is saved by the shutdown barrier instead.
+        plugin.getShutdownBarrier().register("player data", () -> {
+            cache.getPinnedData().forEach(saveQueue::markDirty);
+            saveQueue.prepareShutdown();
+            return saveQueue::awaitShutdown;
+        });
 
         // Register events
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
     }
 
+    private PlayerDataStorage openStorage() {
+        String type = plugin.getConfig().getString("storage.type", "segment");
+        try {
+            if (type.equalsIgnoreCase("file")) {
+                return new FileStorage(dataFolder, ".dat", ".json");
+            }
+            if (type.equalsIgnoreCase("sqlite")) {
+                return new SqliteStorage(new File(plugin.getDataFolder(), "playerdata.db"), dataFolder);
+            }
+            if (!type.equalsIgnoreCase("segment")) {
+                plugin.getLogger().warning("Unknown storage type '" + type + "', using segment storage");
+            }
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to open " + type + " storage, using segment storage", e);
+        }
+        return new SegmentStorage(plugin.getDataStore());
+    }
+
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
-        if (!playerData.containsKey(player.getUniqueId())) {
-            PlayerData data = new PlayerData(player);
-            playerData.put(player.getUniqueId(), data);
-            savePlayerData(data);
+        if (cache.getPinned(player.getUniqueId()) == null) {
+            cache.pin(cache.get(player.getUniqueId(), this::preparePlayerData));
         }
     }
 
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
-        PlayerData data = playerData.get(player.getUniqueId());
+        PlayerData data = cache.getPinned(player.getUniqueId());
         if (data != null) {
             savePlayerData(data);
+            // Stays cached for a quick rejoin, but can now be evicted
+            cache.unpin(player.getUniqueId());
         }
     }
 
-    private void loadPlayerData(Player player) {
-        File playerFile = new File(dataFolder, player.getUniqueId().toString() + ".json");
-        if (!playerFile.exists()) {
-            // Create new player data
-            PlayerData data = new PlayerData(player);
-            playerData.put(player.getUniqueId(), data);
-            return;
+    public PlayerData preparePlayerData(UUID uuid) {
+        // Runs off the main thread during async pre-login
+        PlayerData data = readPlayerData(uuid);
+        if (data == null) {
+            data = new PlayerData(uuid);
+            savePlayerData(data);
         }
+        return data;
+    }
 
-        try (FileReader reader = new FileReader(playerFile)) {
-            JSONObject json = (JSONObject) jsonParser.parse(reader);
-            PlayerData data = new PlayerData(player);
-
-            // Load basic data
-            data.setBedrockPlayer(json.getBoolean("isBedrock"));
-            data.setWebstoreId(json.getString("webstoreId"));
-            data.setLastLogin(json.getLong("lastLogin"));
-
-            // Load purchases
-            JSONObject purchases = (JSONObject) json.get("purchases");
-            if (purchases != null) {
-                for (Object key : purchases.keySet()) {
-                    String itemId = (String) key;
-                    long purchaseTime = (long) purchases.get(itemId);
-                    data.addPurchase(itemId, purchaseTime);
-                }
-            }
-
-            // Load cosmetics
-            JSONObject cosmetics = (JSONObject) json.get("cosmetics");
-            if (cosmetics != null) {
-                for (Object key : cosmetics.keySet()) {
-                    String type = (String) key;
-                    String cosmeticId = (String) cosmetics.get(type);
-                    data.setCosmetic(type, cosmeticId);
-                }
-            }
+    public void registerPlayerData(PlayerData data) {
+        cache.pin(data);
+    }
 
-            // Load Roblox data
-            JSONObject roblox = (JSONObject) json.get("roblox");
-            if (roblox != null) {
-                data.setRobloxUsername((String) roblox.get("username"));
-                data.setRobloxId((String) roblox.get("id"));
-            }
+    private PlayerData readPlayerData(UUID uuid) {
+        // A queued save is newer than anything in storage
+        PlayerData dirty = saveQueue.getDirty(uuid);
+        if (dirty != null) {
+            return dirty;
+        }
 
-            // Load Browser data
-            JSONObject browser = (JSONObject) json.get("browser");
-            if (browser != null) {
-                data.setBrowserUsername((String) browser.get("username"));
-                data.setBrowserSessionId((String) browser.get("sessionId"));
+        try {
+            byte[] encoded = saveQueue.getInFlight(uuid);
+            if (encoded == null) {
+                encoded = saveQueue.getStorage().load(uuid);
             }
-
-            playerData.put(player.getUniqueId(), data);
+            return encoded != null ? PlayerDataCodec.decode(uuid, encoded) : null;
         } catch (Exception e) {
-            plugin.getLogger().severe("Failed to load player data for " + player.getName() + ": " + e.getMessage());
+            plugin.getLogger().severe("Failed to load player data for " + uuid + ": " + e.getMessage());
             // Create new player data if loading fails
-            PlayerData data = new PlayerData(player);
-            playerData.put(player.getUniqueId(), data);
+            return new PlayerData(uuid);
         }
     }
 
-    private void savePlayerData(PlayerData data) {
-        File playerFile = new File(dataFolder, data.getUuid().toString() + ".json");
-        try (FileWriter writer = new FileWriter(playerFile)) {
-            JSONObject json = new JSONObject();
-
-            // Save basic data
-            json.put("isBedrock", data.isBedrockPlayer());
-            json.put("webstoreId", data.getWebstoreId());
-            json.put("lastLogin", data.getLastLogin());
-
-            // Save purchases
-            JSONObject purchases = new JSONObject();
-            for (Map.Entry<String, Long> entry : data.getPurchases().entrySet()) {
-                purchases.put(entry.getKey(), entry.getValue());
-            }
-            json.put("purchases", purchases);
-
-            // Save cosmetics
-            JSONObject cosmetics = new JSONObject();
-            for (Map.Entry<String, String> entry : data.getCosmetics().entrySet()) {
-                cosmetics.put(entry.getKey(), entry.getValue());
-            }
-            json.put("cosmetics", cosmetics);
+    // Queues the record; the write happens on the next flush
+    public void savePlayerData(PlayerData data) {
+        saveQueue.markDirty(data);
+    }
 
-            // Save Roblox data
-            JSONObject roblox = new JSONObject();
-            roblox.put("username", data.getRobloxUsername());
-            roblox.put("id", data.getRobloxId());
-            json.put("roblox", roblox);
+    // Loads offline players lazily through the cache; null if there is no record
+    public PlayerData findPlayerData(UUID uuid) {
+        return cache.get(uuid, this::readPlayerData);
+    }
 
-            // Save Browser data
-            JSONObject browser = new JSONObject();
-            browser.put("username", data.getBrowserUsername());
-            browser.put("sessionId", data.getBrowserSessionId());
-            json.put("browser", browser);
+    // Debugging aid: writes the record as JSON to exports/<uuid>.json
+    public File exportPlayerData(UUID uuid) throws IOException {
+        PlayerData data = findPlayerData(uuid);
+        if (data == null)
+            return null;
 
-            writer.write(json.toJSONString());
-        } catch (Exception e) {
-            plugin.getLogger()
-                    .severe("Failed to save player data for " + data.getPlayer().getName() + ": " + e.getMessage());
-        }
+        File exportFile = new File(new File(plugin.getDataFolder(), "exports"), uuid + ".json");
+        Files.createDirectories(exportFile.getParentFile().toPath());
+        Files.write(exportFile.toPath(), PlayerDataCodec.toJson(data).toJSONString().getBytes(StandardCharsets.UTF_8));
+        return exportFile;
     }
 
     public PlayerData getPlayerData(Player player) {
-        return playerData.computeIfAbsent(player.getUniqueId(), k -> new PlayerData(player));
+        PlayerData data = cache.getPinned(player.getUniqueId());
+        if (data != null)
+            return data;
+        data = cache.get(player.getUniqueId(), this::preparePlayerData);
+        return player.isOnline() ? cache.pin(data) : data;
     }
 
     public void updatePlayerData(Player player, PlayerData data) {
-        playerData.put(player.getUniqueId(), data);
+        cache.put(data);
+        if (player.isOnline()) {
+            cache.pin(data);
+        }
         savePlayerData(data);
     }
 
@@ -201,26 +199,38 @@ public class PlayerDataManager implements Listener {
     }
 
     public void initializePlayerData(BedrockConnection connection) {
-        UUID uuid = connection.getBedrockUuid();
-        if (!playerData.containsKey(uuid)) {
-            PlayerData data = new PlayerData(uuid);
-            data.setCustomValue("bedrock_username", connection.getBedrockUsername());
-            data.setCustomValue("device_id", connection.getDeviceId());
-            data.setCustomValue("device_model", connection.getDeviceModel());
-            data.setCustomValue("device_os", connection.getDeviceOS());
-            data.setCustomValue("client_version", connection.getClientVersion());
-            data.setCustomValue("language", connection.getLanguage());
-            data.setCustomValue("is_premium", connection.isPremium());
-            playerData.put(uuid, data);
-            savePlayerData(data);
+        UUID uuid = connection.getUuid();
+        // Usually the login pipeline has already pinned the stored record
+        PlayerData data = cache.getPinned(uuid);
+        if (data == null) {
+            data = cache.pin(cache.get(uuid, this::preparePlayerData));
         }
+        data.setCustomValue("bedrock_username", connection.getUsername());
+        data.setDeviceProfile(connection.getDeviceProfile());
+        savePlayerData(data);
     }
 
     public void savePlayerData(BedrockConnection connection) {
-        UUID uuid = connection.getBedrockUuid();
-        PlayerData data = playerData.get(uuid);
+        PlayerData data = cache.getIfPresent(connection.getUuid());
         if (data != null) {
             savePlayerData(data);
         }
     }
-}
\ No newline at end of file
+
+    public PlayerDataCache getCache() {
+        return cache;
+    }
+
+    public WriteBehindQueue getSaveQueue() {
+        return saveQueue;
+    }
+
+    public int getPendingSaves() {
+        return saveQueue.getPendingCount();
+    }
+
+    // Runs after the shutdown barrier has written everything out
+    public void shutdown() {
+        cache.clear();
+    }
+}
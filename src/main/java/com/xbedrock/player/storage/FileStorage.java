@@ -0,0 +1,86 @@
+package com.xbedrock.player.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.UUID;
+
+// One file per player. Each record is written to a temp file and renamed over the old one,
+// so a crash mid-write leaves the previous version intact
+public class FileStorage implements PlayerDataStorage {
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path folder;
+    private final String extension;
+    private final String legacyExtension;
+
+    // Files with the legacy extension are still read, and replaced on their next save
+    public FileStorage(File folder, String extension, String legacyExtension) throws IOException {
+        this.folder = folder.toPath();
+        this.extension = extension;
+        this.legacyExtension = legacyExtension;
+        Files.createDirectories(this.folder);
+    }
+
+    @Override
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public byte[] load(UUID uuid) throws IOException {
+        byte[] data = read(pathOf(uuid));
+        if (data == null && legacyExtension != null) {
+            data = read(folder.resolve(uuid.toString() + legacyExtension));
+        }
+        return data;
+    }
+
+    @Override
+    public void store(Map<UUID, byte[]> batch) throws IOException {
+        IOException failure = null;
+        for (Map.Entry<UUID, byte[]> entry : batch.entrySet()) {
+            try {
+                write(pathOf(entry.getKey()), entry.getValue());
+            } catch (IOException e) {
+                // Keep writing the rest of the batch; report the first failure
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private byte[] read(Path path) throws IOException {
+        try {
+            return Files.readAllBytes(path);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private void write(Path target, byte[] data) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        Files.write(temp, data);
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private Path pathOf(UUID uuid) {
+        return folder.resolve(uuid.toString() + extension);
+    }
+}
@@ -0,0 +1,19 @@
+package com.xbedrock.player.storage;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+
+// Backend for encoded player records. Loads may run on any thread; stores come from the
+// single write-behind thread, one batch at a time.
+public interface PlayerDataStorage {
+
+    String getName();
+
+    // Null when the player has no stored record
+    byte[] load(UUID uuid) throws IOException;
+
+    void store(Map<UUID, byte[]> batch) throws IOException;
+
+    void close() throws IOException;
+}
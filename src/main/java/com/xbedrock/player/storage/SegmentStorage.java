@@ -0,0 +1,35 @@
+package com.xbedrock.player.storage;
+
+import com.xbedrock.storage.DataStore;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+
+// Player data inside the shared segment store; the store itself is closed by the plugin
+public class SegmentStorage implements PlayerDataStorage {
+    private final DataStore dataStore;
+
+    public SegmentStorage(DataStore dataStore) {
+        this.dataStore = dataStore;
+    }
+
+    @Override
+    public String getName() {
+        return "segment";
+    }
+
+    @Override
+    public byte[] load(UUID uuid) throws IOException {
+        return dataStore.get(DataStore.Namespace.PLAYER_DATA, uuid);
+    }
+
+    @Override
+    public void store(Map<UUID, byte[]> batch) throws IOException {
+        dataStore.putAll(DataStore.Namespace.PLAYER_DATA, batch);
+    }
+
+    @Override
+    public void close() {
+    }
+}
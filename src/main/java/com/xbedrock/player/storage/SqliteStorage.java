@@ -0,0 +1,119 @@
+package com.xbedrock.player.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.UUID;
+
+// Single-file embedded database; uses the SQLite JDBC driver bundled with the server. Loads use
+// their own connection, so a login never waits behind a batch being committed on the writer.
+public class SqliteStorage implements PlayerDataStorage {
+    private static final String LEGACY_EXTENSION = ".json";
+
+    private final Connection writer;
+    private final Connection reader;
+    private final Path legacyFolder;
+
+    // Players without a row fall back to the legacy <uuid>.json in legacyFolder until their next save
+    public SqliteStorage(File databaseFile, File legacyFolder) throws IOException {
+        this.legacyFolder = legacyFolder.toPath();
+        String url = "jdbc:sqlite:" + databaseFile.getAbsolutePath();
+        try {
+            this.writer = DriverManager.getConnection(url);
+            try (Statement statement = writer.createStatement()) {
+                // WAL lets login loads read while a batch is being committed
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+                statement.execute("CREATE TABLE IF NOT EXISTS player_data ("
+                        + "uuid TEXT PRIMARY KEY, "
+                        + "data BLOB NOT NULL, "
+                        + "updated_at INTEGER NOT NULL)");
+            }
+            this.reader = DriverManager.getConnection(url);
+        } catch (SQLException e) {
+            throw new IOException("Failed to open " + databaseFile, e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "sqlite";
+    }
+
+    @Override
+    public byte[] load(UUID uuid) throws IOException {
+        byte[] data;
+        synchronized (reader) {
+            try (PreparedStatement statement = reader.prepareStatement(
+                    "SELECT data FROM player_data WHERE uuid = ?")) {
+                statement.setString(1, uuid.toString());
+                try (ResultSet result = statement.executeQuery()) {
+                    data = result.next() ? result.getBytes(1) : null;
+                }
+            } catch (SQLException e) {
+                throw new IOException("Failed to load " + uuid, e);
+            }
+        }
+        return data != null ? data : readLegacy(uuid);
+    }
+
+    @Override
+    public void store(Map<UUID, byte[]> batch) throws IOException {
+        long now = System.currentTimeMillis();
+        synchronized (writer) {
+            try {
+                // One transaction per batch
+                writer.setAutoCommit(false);
+                try (PreparedStatement statement = writer.prepareStatement(
+                        "INSERT OR REPLACE INTO player_data (uuid, data, updated_at) VALUES (?, ?, ?)")) {
+                    for (Map.Entry<UUID, byte[]> entry : batch.entrySet()) {
+                        statement.setString(1, entry.getKey().toString());
+                        statement.setBytes(2, entry.getValue());
+                        statement.setLong(3, now);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                    writer.commit();
+                } catch (SQLException e) {
+                    writer.rollback();
+                    throw e;
+                } finally {
+                    writer.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                throw new IOException("Failed to store " + batch.size() + " records", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            synchronized (reader) {
+                reader.close();
+            }
+            synchronized (writer) {
+                writer.close();
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to close database", e);
+        }
+    }
+
+    private byte[] readLegacy(UUID uuid) throws IOException {
+        try {
+            return Files.readAllBytes(legacyFolder.resolve(uuid + LEGACY_EXTENSION));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+}
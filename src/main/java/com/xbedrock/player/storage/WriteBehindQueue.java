@@ -0,0 +1,189 @@
+package com.xbedrock.player.storage;
+
+import com.xbedrock.XBedrockPlugin;
+import com.xbedrock.player.PlayerData;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+
+// Coalesces saves: marking a record dirty is just a map put. Once per flush interval the main
+// thread encodes every dirty record (PlayerData is mutated there, so snapshots are consistent)
+// and hands them to a single writer thread in batches.
+public class WriteBehindQueue {
+    private final XBedrockPlugin plugin;
+    private final PlayerDataStorage storage;
+    private final Function<PlayerData, byte[]> encoder;
+    private final int batchSize;
+    private final Map<UUID, PlayerData> dirty;
+    // Encoded but not yet stored; loads check here so they never see an older copy on disk
+    private final Map<UUID, byte[]> inFlight;
+    private final ExecutorService writer;
+    // Players whose records are being restored; their saves are dropped until released
+    private volatile Predicate<UUID> held;
+    private BukkitTask flushTask;
+
+    public WriteBehindQueue(XBedrockPlugin plugin, PlayerDataStorage storage, Function<PlayerData, byte[]> encoder,
+            int batchSize) {
+        this.plugin = plugin;
+        this.storage = storage;
+        this.encoder = encoder;
+        this.batchSize = Math.max(1, batchSize);
+        this.dirty = new ConcurrentHashMap<>();
+        this.inFlight = new ConcurrentHashMap<>();
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "XBedrock-DataWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start(long flushIntervalTicks) {
+        flushTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::flush,
+                flushIntervalTicks, flushIntervalTicks);
+    }
+
+    public void markDirty(PlayerData data) {
+        dirty.put(data.getUuid(), data);
+    }
+
+    public PlayerData getDirty(UUID uuid) {
+        return dirty.get(uuid);
+    }
+
+    public byte[] getInFlight(UUID uuid) {
+        return inFlight.get(uuid);
+    }
+
+    public int getPendingCount() {
+        return dirty.size() + inFlight.size();
+    }
+
+    public PlayerDataStorage getStorage() {
+        return storage;
+    }
+
+    // Main thread: drops the queued saves of matching players and keeps dropping new ones until
+    // release(), so nothing written from their old in-memory state lands on restored records
+    public void hold(Predicate<UUID> filter) {
+        held = filter;
+        dirty.keySet().removeIf(filter);
+    }
+
+    public void release() {
+        held = null;
+    }
+
+    // Blocks until every batch submitted so far has been stored
+    public void awaitWrites() throws InterruptedException {
+        try {
+            writer.submit(() -> { }).get();
+        } catch (ExecutionException | RejectedExecutionException e) {
+            // The writer has stopped, so nothing is left to wait for
+        }
+    }
+
+    // Main thread
+    public void flush() {
+        if (dirty.isEmpty())
+            return;
+
+        Predicate<UUID> held = this.held;
+        List<PlayerData> records = new ArrayList<>(batchSize);
+        Map<UUID, byte[]> batch = new LinkedHashMap<>();
+        for (PlayerData data : dirty.values()) {
+            if (held != null && held.test(data.getUuid())) {
+                dirty.remove(data.getUuid(), data);
+                continue;
+            }
+
+            byte[] encoded;
+            try {
+                encoded = encoder.apply(data);
+            } catch (RuntimeException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to encode player data for " + data.getUuid(), e);
+                dirty.remove(data.getUuid(), data);
+                continue;
+            }
+            // In flight before it leaves dirty, so a concurrent load always finds one of the two.
+            // A markDirty that replaced the entry meanwhile stays queued for the next flush.
+            inFlight.put(data.getUuid(), encoded);
+            dirty.remove(data.getUuid(), data);
+            records.add(data);
+            batch.put(data.getUuid(), encoded);
+
+            if (batch.size() >= batchSize) {
+                submit(records, batch);
+                records = new ArrayList<>(batchSize);
+                batch = new LinkedHashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            submit(records, batch);
+        }
+    }
+
+    // Main thread: stops the periodic flush and hands everything still dirty to the writer
+    public void prepareShutdown() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        flush();
+        writer.shutdown();
+    }
+
+    // Waits for the writer to drain, then closes the storage; returns the number of records
+    // still unsaved. Interrupting the caller abandons whatever has not been written yet.
+    public int awaitShutdown() {
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            writer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        try {
+            storage.close();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to close " + storage.getName() + " storage", e);
+        }
+        return getPendingCount();
+    }
+
+    private void submit(List<PlayerData> records, Map<UUID, byte[]> batch) {
+        try {
+            writer.execute(() -> write(records, batch));
+        } catch (RejectedExecutionException e) {
+            // Writer already stopped; keep the records dirty so they are reported as unsaved
+            batch.keySet().forEach(inFlight::remove);
+            records.forEach(data -> dirty.putIfAbsent(data.getUuid(), data));
+        }
+    }
+
+    private void write(List<PlayerData> records, Map<UUID, byte[]> batch) {
+        try {
+            storage.store(batch);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to save " + batch.size() + " player records", e);
+            // Retry on the next flush unless a newer change is already queued
+            records.forEach(data -> dirty.putIfAbsent(data.getUuid(), data));
+        } finally {
+            for (Map.Entry<UUID, byte[]> entry : batch.entrySet()) {
+                inFlight.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+}
@@ -10,18 +10,13 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
 import com.xbedrock.XBedrockPlugin;
+import com.xbedrock.session.PlayerSession;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class PvPManager implements Listener {
     private final XBedrockPlugin plugin;
     private PvPMode currentMode;
-    private final Map<UUID, CombatData> combatData;
-    private final Map<UUID, Long> lastAttackTime;
-    private final Map<UUID, Double> attackCooldown;
     private static final long ATTACK_COOLDOWN = 600; // 0.6 seconds in milliseconds
     private static final double CRITICAL_MULTIPLIER = 1.5;
     private static final double SWEEPING_MULTIPLIER = 0.5;
@@ -45,9 +40,6 @@ public class PvPManager implements Listener {
     public PvPManager(XBedrockPlugin plugin) {
         this.plugin = plugin;
         this.currentMode = PvPMode.MODERN;
-        this.combatData = new ConcurrentHashMap<>();
-        this.lastAttackTime = new ConcurrentHashMap<>();
-        this.attackCooldown = new ConcurrentHashMap<>();
     }
 
     public void setPvPMode(PvPMode mode) {
@@ -90,10 +82,9 @@ public class PvPManager implements Listener {
     @EventHandler
     public void onPlayerSprint(PlayerToggleSprintEvent event) {
         if (currentMode == PvPMode.MODERN && event.isSprinting()) {
-            Player player = event.getPlayer();
-            CombatData data = combatData.get(player.getUniqueId());
-            if (data != null) {
-                data.setSprinting(true);
+            PlayerSession session = plugin.getSessionManager().getSession(event.getPlayer());
+            if (session != null) {
+                session.getCombatData().setSprinting(true);
             }
         }
     }
@@ -118,7 +109,7 @@ public class PvPManager implements Listener {
     private void handleModernPvP(EntityDamageByEntityEvent event, Player attacker, Player victim) {
         // Modern PvP mechanics (1.9+)
         double damage = event.getDamage();
-        double cooldown = attackCooldown.getOrDefault(attacker.getUniqueId(), 1.0);
+        double cooldown = getAttackCooldown(attacker);
 
         // Apply attack cooldown
         damage *= cooldown;
@@ -139,7 +130,7 @@ public class PvPManager implements Listener {
     private void handleHybridPvP(EntityDamageByEntityEvent event, Player attacker, Player victim) {
         // Hybrid PvP mechanics (mix of 1.8 and modern)
         double damage = event.getDamage();
-        double cooldown = attackCooldown.getOrDefault(attacker.getUniqueId(), 1.0);
+        double cooldown = getAttackCooldown(attacker);
 
         // Apply reduced cooldown effect
         damage *= Math.max(0.5, cooldown);
@@ -161,29 +152,43 @@ public class PvPManager implements Listener {
         long currentTime = System.currentTimeMillis();
 
         // Update attacker data
-        CombatData attackerData = combatData.computeIfAbsent(attacker.getUniqueId(), k -> new CombatData());
-        attackerData.setLastAttackTime(currentTime);
-        attackerData.setLastVictim(victim.getUniqueId());
+        PlayerSession attackerSession = plugin.getSessionManager().getSession(attacker);
+        if (attackerSession != null) {
+            CombatData attackerData = attackerSession.getCombatData();
+            attackerData.setLastAttackTime(currentTime);
+            attackerData.setLastVictim(victim.getUniqueId());
+        }
 
         // Update victim data
-        CombatData victimData = combatData.computeIfAbsent(victim.getUniqueId(), k -> new CombatData());
-        victimData.setLastAttackedTime(currentTime);
-        victimData.setLastAttacker(attacker.getUniqueId());
+        PlayerSession victimSession = plugin.getSessionManager().getSession(victim);
+        if (victimSession != null) {
+            CombatData victimData = victimSession.getCombatData();
+            victimData.setLastAttackedTime(currentTime);
+            victimData.setLastAttacker(attacker.getUniqueId());
+        }
 
         // Apply combat tag effect
         victim.addPotionEffect(new PotionEffect(PotionEffectType.GLOWING, 100, 0, false, false));
     }
 
     private void updateAttackCooldown(Player player, int newSlot) {
+        PlayerSession session = plugin.getSessionManager().getSession(player);
+        if (session == null)
+            return;
+
         long currentTime = System.currentTimeMillis();
-        long lastAttack = lastAttackTime.getOrDefault(player.getUniqueId(), 0L);
-        long timeSinceLastAttack = currentTime - lastAttack;
+        long timeSinceLastAttack = currentTime - session.getLastAttackTime();
 
         double cooldown = Math.min(1.0, (double) timeSinceLastAttack / ATTACK_COOLDOWN);
-        attackCooldown.put(player.getUniqueId(), cooldown);
+        session.setAttackCooldown(cooldown);
+    }
+
+    private double getAttackCooldown(Player player) {
+        PlayerSession session = plugin.getSessionManager().getSession(player);
+        return session != null ? session.getAttackCooldown() : 1.0;
     }
 
-    private static class CombatData {
+    public static class CombatData {
         private long lastAttackTime;
         private long lastAttackedTime;
         private UUID lastVictim;
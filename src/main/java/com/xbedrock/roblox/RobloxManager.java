@@ -1,6 +1,7 @@
 package com.xbedrock.roblox;
 
 import com.xbedrock.XBedrockPlugin;
+import com.xbedrock.storage.DataStore;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -11,26 +12,25 @@ import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 public class RobloxManager implements Listener {
     private final XBedrockPlugin plugin;
     private final Map<UUID, RobloxPlayer> robloxPlayers;
-    private final File dataFolder;
     private final HttpClient httpClient;
     private final JSONParser jsonParser;
     private final ScheduledExecutorService scheduler;
@@ -44,7 +44,6 @@ public class RobloxManager implements Listener {
     public RobloxManager(XBedrockPlugin plugin) {
         this.plugin = plugin;
         this.robloxPlayers = new ConcurrentHashMap<>();
-        this.dataFolder = new File(plugin.getDataFolder(), "roblox");
         this.httpClient = HttpClient.newBuilder()
                 .version(HttpClient.Version.HTTP_2)
                 .connectTimeout(java.time.Duration.ofSeconds(10))
@@ -53,12 +52,9 @@ public class RobloxManager implements Listener {
         this.scheduler = Executors.newScheduledThreadPool(1);
         this.enabled = false;
 
-        if (!dataFolder.exists()) {
-            dataFolder.mkdirs();
-        }
-
         // Register events
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        plugin.getShutdownBarrier().register("Roblox data", this::prepareShutdownFlush);
 
         // Start position sync task
         startPositionSync();
@@ -101,17 +97,16 @@ public class RobloxManager implements Listener {
         Player player = event.getPlayer();
         RobloxPlayer robloxPlayer = robloxPlayers.remove(player.getUniqueId());
         if (robloxPlayer != null) {
-            saveRobloxData(player);
+            saveRobloxData(player, robloxPlayer);
         }
     }
 
     private void loadRobloxData(Player player) {
-        File playerFile = new File(dataFolder, player.getUniqueId().toString() + ".json");
-        if (!playerFile.exists())
-            return;
-
-        try (FileReader reader = new FileReader(playerFile)) {
-            JSONObject data = (JSONObject) jsonParser.parse(reader);
+        try {
+            byte[] stored = plugin.getDataStore().get(DataStore.Namespace.ROBLOX, player.getUniqueId());
+            if (stored == null)
+                return;
+            JSONObject data = (JSONObject) jsonParser.parse(new String(stored, StandardCharsets.UTF_8));
             RobloxPlayer robloxPlayer = robloxPlayers.get(player.getUniqueId());
             if (robloxPlayer != null) {
                 robloxPlayer.setRobloxId((String) data.get("robloxId"));
@@ -123,22 +118,45 @@ public class RobloxManager implements Listener {
         }
     }
 
-    private void saveRobloxData(Player player) {
-        File playerFile = new File(dataFolder, player.getUniqueId().toString() + ".json");
-        RobloxPlayer robloxPlayer = robloxPlayers.get(player.getUniqueId());
-        if (robloxPlayer == null)
-            return;
+    private void saveRobloxData(Player player, RobloxPlayer robloxPlayer) {
+        try {
+            plugin.getDataStore().put(DataStore.Namespace.ROBLOX, player.getUniqueId(), encodeRobloxData(robloxPlayer));
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to save Roblox data for " + player.getName() + ": " + e.getMessage());
+        }
+    }
 
+    private byte[] encodeRobloxData(RobloxPlayer robloxPlayer) {
         JSONObject data = new JSONObject();
         data.put("robloxId", robloxPlayer.getRobloxId());
         data.put("lastSyncTime", robloxPlayer.getLastSyncTime());
         data.put("inventory", robloxPlayer.getInventory());
+        return data.toJSONString().getBytes(StandardCharsets.UTF_8);
+    }
 
-        try (FileWriter writer = new FileWriter(playerFile)) {
-            writer.write(data.toJSONString());
-        } catch (IOException e) {
-            plugin.getLogger().severe("Failed to save Roblox data for " + player.getName() + ": " + e.getMessage());
+    // Main thread: encodes every linked player; the returned task writes them in one batch
+    private Callable<Integer> prepareShutdownFlush() {
+        if (robloxPlayers.isEmpty())
+            return null;
+
+        Map<UUID, byte[]> records = new HashMap<>();
+        for (Map.Entry<UUID, RobloxPlayer> entry : robloxPlayers.entrySet()) {
+            records.put(entry.getKey(), encodeRobloxData(entry.getValue()));
         }
+        return () -> {
+            try {
+                plugin.getDataStore().putAll(DataStore.Namespace.ROBLOX, records);
+                return 0;
+            } catch (IOException e) {
+                plugin.getLogger().severe("Failed to save Roblox data: " + e.getMessage());
+                return records.size();
+            }
+        };
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        robloxPlayers.clear();
     }
 
     public void syncPlayerPosition(RobloxPlayer robloxPlayer) {
@@ -340,6 +358,11 @@ public class RobloxManager implements Listener {
         }
     }
 
+    // Main thread: forgets offline players left behind when the manager was disabled before they quit
+    public void invalidate(Predicate<UUID> filter) {
+        robloxPlayers.keySet().removeIf(uuid -> filter.test(uuid) && plugin.getServer().getPlayer(uuid) == null);
+    }
+
     public void setEnabled(boolean enabled) {
         this.enabled = enabled;
         if (!enabled) {
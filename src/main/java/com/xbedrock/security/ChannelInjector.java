@@ -0,0 +1,98 @@
+package com.xbedrock.security;
+
+import com.xbedrock.XBedrockPlugin;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+public class ChannelInjector {
+    private static final String ACCEPTOR_NAME = "xbedrock_acceptor";
+
+    private final XBedrockPlugin plugin;
+    private final Consumer<Channel> channelInitializer;
+    private final List<Channel> serverChannels;
+    private final ChannelHandler acceptor;
+
+    public ChannelInjector(XBedrockPlugin plugin, Consumer<Channel> channelInitializer) {
+        this.plugin = plugin;
+        this.channelInitializer = channelInitializer;
+        this.serverChannels = new ArrayList<>();
+        this.acceptor = new Acceptor();
+    }
+
+    // Reflection runs once here, never per player
+    public boolean inject() {
+        try {
+            Object server = plugin.getPlayerIntrospector().invokeGetter(plugin.getServer(), "getServer");
+            Object connection = plugin.getPlayerIntrospector().invokeGetter(server, "getConnection");
+
+            for (ChannelFuture future : findChannelFutures(connection)) {
+                Channel channel = future.channel();
+                if (channel.pipeline().get(ACCEPTOR_NAME) == null) {
+                    channel.pipeline().addFirst(ACCEPTOR_NAME, acceptor);
+                    serverChannels.add(channel);
+                }
+            }
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to inject security handler into server channels", e);
+        }
+        return !serverChannels.isEmpty();
+    }
+
+    public void uninject() {
+        for (Channel channel : serverChannels) {
+            if (channel.pipeline().get(ACCEPTOR_NAME) != null) {
+                channel.pipeline().remove(ACCEPTOR_NAME);
+            }
+        }
+        serverChannels.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ChannelFuture> findChannelFutures(Object connection) throws IllegalAccessException {
+        // The listener keeps its bound channels in a List<ChannelFuture>; match by content instead of by name
+        for (Class<?> type = connection.getClass(); type != null; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (!List.class.isAssignableFrom(field.getType()))
+                    continue;
+
+                field.setAccessible(true);
+                List<?> list = (List<?>) field.get(connection);
+                if (list != null && !list.isEmpty() && list.get(0) instanceof ChannelFuture) {
+                    synchronized (list) {
+                        return new ArrayList<>((List<ChannelFuture>) list);
+                    }
+                }
+            }
+        }
+        throw new IllegalStateException("No listening channels found on " + connection.getClass().getName());
+    }
+
+    // Sits on each listening channel and sees every accepted child before it is registered
+    @ChannelHandler.Sharable
+    private class Acceptor extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            Channel child = (Channel) msg;
+
+            // Registration runs this before the server's own initializer, which the server bootstrap
+            // adds after us; defer to the event loop so the install sees the finished pipeline
+            child.pipeline().addLast(new ChannelInitializer<Channel>() {
+                @Override
+                protected void initChannel(Channel channel) {
+                    channel.eventLoop().execute(() -> channelInitializer.accept(channel));
+                }
+            });
+            ctx.fireChannelRead(msg);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.xbedrock.security;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.AttributeKey;
+
+// Sits in front of the packet decoder and remembers the size of the frame being decoded,
+// so checks after decoding can use real byte counts instead of estimating from the packet object
+@ChannelHandler.Sharable
+public class FrameSizeHandler extends ChannelInboundHandlerAdapter {
+    public static final String NAME = "xbedrock_frame_size";
+    public static final AttributeKey<Frame> KEY = AttributeKey.valueOf("xbedrock_frame");
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof ByteBuf) {
+            Frame frame = ctx.channel().attr(KEY).get();
+            if (frame != null) {
+                frame.size = ((ByteBuf) msg).readableBytes();
+            }
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    public static class Frame {
+        private int size = -1;
+
+        public int getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.xbedrock.security;
+
+import com.xbedrock.XBedrockPlugin;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class PacketClassifier {
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final int UNKNOWN_SIZE = -1;
+    private static final Set<String> DIG_ACTIONS = Set.of("START_DESTROY_BLOCK", "START_DIGGING");
+
+    public enum Category {
+        CUSTOM_PAYLOAD, TAB_COMPLETE, WINDOW_CLICK, BLOCK_PLACE, BLOCK_DIG, USE_ITEM, OTHER
+    }
+
+    private final XBedrockPlugin plugin;
+    private final MethodHandles.Lookup lookup;
+
+    // Classified once per packet class; every later packet of that class is a single ClassValue read
+    private final ClassValue<PacketType> types;
+    // Getter for the raw bytes inside a custom payload object, or null if it has none
+    private final ClassValue<MethodHandle> payloadData;
+    private final AtomicBoolean missingAccessorLogged;
+
+    public PacketClassifier(XBedrockPlugin plugin) {
+        this.plugin = plugin;
+        this.lookup = MethodHandles.lookup();
+        this.types = new ClassValue<>() {
+            @Override
+            protected PacketType computeValue(Class<?> type) {
+                return classify(type);
+            }
+        };
+        this.payloadData = new ClassValue<>() {
+            @Override
+            protected MethodHandle computeValue(Class<?> type) {
+                return resolveGetter(type, "data", "getData");
+            }
+        };
+        this.missingAccessorLogged = new AtomicBoolean();
+    }
+
+    public PacketType getType(Class<?> packetClass) {
+        return types.get(packetClass);
+    }
+
+    // Wire size for raw buffers, or UNKNOWN_SIZE for decoded packets
+    public static int getSize(Object msg) {
+        if (msg instanceof ByteBuf)
+            return ((ByteBuf) msg).readableBytes();
+        if (msg instanceof ByteBufHolder)
+            return ((ByteBufHolder) msg).content().readableBytes();
+        if (msg instanceof byte[])
+            return ((byte[]) msg).length;
+        return UNKNOWN_SIZE;
+    }
+
+    // Body of a custom payload packet. Since 1.20.5 the packet holds a CustomPacketPayload record
+    // rather than a buffer, so the bytes are one more getter away; typed payloads have none.
+    public Object readPayload(PacketType type, Object packet) {
+        Object payload = type.readAccessor(packet);
+        if (payload == null || getSize(payload) != UNKNOWN_SIZE)
+            return payload;
+
+        MethodHandle data = payloadData.get(payload.getClass());
+        if (data == null)
+            return null;
+        try {
+            return (Object) data.invokeExact(payload);
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    private PacketType classify(Class<?> type) {
+        String name = type.getSimpleName();
+        Category category = Category.OTHER;
+        MethodHandle accessor = null;
+
+        if (name.contains("CustomPayload")) {
+            category = Category.CUSTOM_PAYLOAD;
+            accessor = resolveGetter(type, "payload", "getData", "data");
+            if (accessor == null && missingAccessorLogged.compareAndSet(false, true)) {
+                plugin.getLogger().warning("No payload accessor found on " + type.getName()
+                        + ", custom payload size checks are disabled");
+            }
+        } else if (name.contains("TabComplete") || name.contains("CommandSuggestion")) {
+            category = Category.TAB_COMPLETE;
+        } else if (name.contains("WindowClick") || name.contains("ContainerClick")) {
+            category = Category.WINDOW_CLICK;
+        } else if (name.contains("BlockPlace") || name.contains("UseItemOn")) {
+            // 1.21 places blocks with ServerboundUseItemOnPacket
+            category = Category.BLOCK_PLACE;
+        } else if (name.contains("BlockDig") || name.contains("PlayerAction")) {
+            // ServerboundPlayerActionPacket also carries drops and hand swaps; the action tells them apart
+            category = Category.BLOCK_DIG;
+            accessor = resolveGetter(type, "getAction", "action");
+        } else if (name.contains("UseItem")) {
+            category = Category.USE_ITEM;
+        }
+
+        return new PacketType(name, category, accessor);
+    }
+
+    private MethodHandle resolveGetter(Class<?> type, String... names) {
+        for (String name : names) {
+            try {
+                Method method = type.getMethod(name);
+                method.setAccessible(true);
+                return lookup.unreflect(method).asType(GETTER_TYPE);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // Try the next candidate name
+            }
+        }
+        return null;
+    }
+
+    public static class PacketType {
+        private final String name;
+        private final Category category;
+        private final MethodHandle accessor;
+
+        PacketType(String name, Category category, MethodHandle accessor) {
+            this.name = name;
+            this.category = category;
+            this.accessor = accessor;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Category getCategory() {
+            return category;
+        }
+
+        public boolean isCrasherCandidate() {
+            return category == Category.CUSTOM_PAYLOAD
+                    || category == Category.TAB_COMPLETE
+                    || category == Category.WINDOW_CLICK;
+        }
+
+        public boolean isPrinterCandidate() {
+            return category == Category.BLOCK_PLACE
+                    || category == Category.BLOCK_DIG
+                    || category == Category.USE_ITEM;
+        }
+
+        // A started block break; every other player action is ignored by the printer check
+        public boolean isDig(Object packet) {
+            if (category != Category.BLOCK_DIG)
+                return false;
+            if (accessor == null)
+                return true;
+            Object action = readAccessor(packet);
+            return action instanceof Enum && DIG_ACTIONS.contains(((Enum<?>) action).name());
+        }
+
+        // Payload object for custom payloads, action for player actions
+        public Object readAccessor(Object packet) {
+            if (accessor == null)
+                return null;
+            try {
+                return (Object) accessor.invokeExact(packet);
+            } catch (Throwable t) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.xbedrock.security;
+
+import com.xbedrock.XBedrockPlugin;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+public class PacketLogger {
+    private static final int DEFAULT_CAPACITY = 8192;
+    private static final int BATCH_SIZE = 512;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final XBedrockPlugin plugin;
+    private final int mask;
+
+    // Bounded MPSC ring: event loops claim slots with a CAS on tail, the writer thread alone advances head.
+    // A slot is readable once its sequence equals position + 1.
+    private final AtomicLongArray sequences;
+    private final long[] timestamps;
+    private final String[] players;
+    private final String[] packets;
+    private final int[] sizes;
+    private final AtomicLong tail;
+    private final AtomicLong head;
+    private final LongAdder dropped;
+
+    private final AtomicBoolean running;
+    private volatile Thread writerThread;
+    private volatile File logFile;
+    private volatile long maxFileSize;
+    private volatile int maxFiles;
+
+    public PacketLogger(XBedrockPlugin plugin) {
+        this(plugin, DEFAULT_CAPACITY);
+    }
+
+    public PacketLogger(XBedrockPlugin plugin, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.plugin = plugin;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        this.timestamps = new long[size];
+        this.players = new String[size];
+        this.packets = new String[size];
+        this.sizes = new int[size];
+        this.tail = new AtomicLong(0);
+        this.head = new AtomicLong(0);
+        this.dropped = new LongAdder();
+        this.running = new AtomicBoolean(false);
+    }
+
+    public void configure(File logFile, long maxFileSize, int maxFiles) {
+        this.logFile = logFile;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = Math.max(1, maxFiles);
+    }
+
+    public void start() {
+        if (!running.compareAndSet(false, true))
+            return;
+
+        Thread thread = new Thread(this::runWriter, "XBedrock-PacketLogger");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        this.writerThread = thread;
+        thread.start();
+    }
+
+    // Called from Netty event loops; never blocks and drops the record when the ring is full
+    public boolean log(long timestamp, String player, String packet, int size) {
+        long position;
+        do {
+            position = tail.get();
+            if (position - head.get() > mask) {
+                dropped.increment();
+                return false;
+            }
+        } while (!tail.compareAndSet(position, position + 1));
+
+        int index = (int) (position & mask);
+        timestamps[index] = timestamp;
+        players[index] = player;
+        packets[index] = packet;
+        sizes[index] = size;
+        sequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    public long getDroppedRecords() {
+        return dropped.sum();
+    }
+
+    public void shutdown() {
+        if (!running.compareAndSet(true, false))
+            return;
+
+        Thread thread = writerThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        long lost = dropped.sum();
+        if (lost > 0) {
+            plugin.getLogger().warning("Packet logger dropped " + lost + " records because the buffer was full");
+        }
+    }
+
+    private void runWriter() {
+        Writer writer = null;
+        File currentFile = null;
+        long written = 0;
+        StringBuilder line = new StringBuilder(128);
+
+        try {
+            while (running.get() || head.get() != tail.get()) {
+                File target = logFile;
+                if (target == null) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+
+                // Reopen when the configured file changes or the current one is full
+                if (writer == null || !target.equals(currentFile) || written >= maxFileSize) {
+                    closeQuietly(writer);
+                    if (target.equals(currentFile) && written >= maxFileSize) {
+                        rotate(target);
+                    }
+                    target.getParentFile().mkdirs();
+                    currentFile = target;
+                    written = target.length();
+                    writer = new BufferedWriter(new OutputStreamWriter(
+                            new FileOutputStream(target, true), StandardCharsets.UTF_8));
+                }
+
+                int drained = 0;
+                long position = head.get();
+                while (drained < BATCH_SIZE && sequences.get((int) (position & mask)) == position + 1) {
+                    int index = (int) (position & mask);
+
+                    // One tab-separated line per record: time, player, packet, size
+                    line.setLength(0);
+                    line.append(timestamps[index]).append('\t')
+                            .append(players[index]).append('\t')
+                            .append(packets[index]).append('\t')
+                            .append(sizes[index]).append('\n');
+                    writer.append(line);
+                    written += line.length();
+
+                    players[index] = null;
+                    packets[index] = null;
+                    position++;
+                    head.lazySet(position);
+                    drained++;
+                }
+
+                if (drained == 0) {
+                    writer.flush();
+                    if (!running.get())
+                        break;
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Packet logger stopped writing", e);
+        } finally {
+            closeQuietly(writer);
+        }
+    }
+
+    private void rotate(File file) {
+        // packets.log -> packets.log.1 -> packets.log.2 ... oldest is deleted
+        File oldest = new File(file.getPath() + "." + maxFiles);
+        if (oldest.exists()) {
+            oldest.delete();
+        }
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            File source = new File(file.getPath() + "." + i);
+            if (source.exists()) {
+                source.renameTo(new File(file.getPath() + "." + (i + 1)));
+            }
+        }
+        file.renameTo(new File(file.getPath() + ".1"));
+    }
+
+    private void closeQuietly(Writer writer) {
+        if (writer == null)
+            return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            plugin.getLogger().fine("Failed to close packet log: " + e.getMessage());
+        }
+    }
+}
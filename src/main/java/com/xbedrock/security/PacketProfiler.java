@@ -0,0 +1,142 @@
+package com.xbedrock.security;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class PacketProfiler {
+    private static final int LATENCY_BUCKETS = 40; // power-of-two nanosecond buckets
+
+    // Null while inactive, so the packet path pays a single volatile read
+    private volatile Session session;
+
+    public Session getSession() {
+        return session;
+    }
+
+    public boolean start() {
+        synchronized (this) {
+            if (session != null)
+                return false;
+            session = new Session(System.nanoTime());
+            return true;
+        }
+    }
+
+    public Session stop() {
+        synchronized (this) {
+            Session finished = session;
+            session = null;
+            if (finished != null) {
+                finished.endNanos = System.nanoTime();
+            }
+            return finished;
+        }
+    }
+
+    public boolean isActive() {
+        return session != null;
+    }
+
+    public static class Session {
+        private final long startNanos;
+        private volatile long endNanos;
+        private final Map<PacketClassifier.PacketType, PacketStats> stats;
+
+        Session(long startNanos) {
+            this.startNanos = startNanos;
+            this.stats = new ConcurrentHashMap<>();
+        }
+
+        // Called from Netty event loops while profiling
+        public void record(PacketClassifier.PacketType type, int bytes, long nanos) {
+            PacketStats packetStats = stats.get(type);
+            if (packetStats == null) {
+                packetStats = stats.computeIfAbsent(type, PacketStats::new);
+            }
+            packetStats.record(bytes, nanos);
+        }
+
+        public double getDurationSeconds() {
+            long end = endNanos != 0 ? endNanos : System.nanoTime();
+            return (end - startNanos) / 1_000_000_000.0;
+        }
+
+        public List<PacketStats> getTop(int limit) {
+            List<PacketStats> sorted = new ArrayList<>(stats.values());
+            sorted.sort(Comparator.comparingLong(PacketStats::getCount).reversed());
+            return sorted.subList(0, Math.min(limit, sorted.size()));
+        }
+
+        public long getTotalPackets() {
+            long total = 0;
+            for (PacketStats packetStats : stats.values()) {
+                total += packetStats.getCount();
+            }
+            return total;
+        }
+    }
+
+    public static class PacketStats {
+        private final PacketClassifier.PacketType type;
+        private final LongAdder count;
+        private final LongAdder bytes;
+        private final LongAdder nanos;
+        private final AtomicLongArray latency;
+
+        PacketStats(PacketClassifier.PacketType type) {
+            this.type = type;
+            this.count = new LongAdder();
+            this.bytes = new LongAdder();
+            this.nanos = new LongAdder();
+            this.latency = new AtomicLongArray(LATENCY_BUCKETS);
+        }
+
+        void record(int size, long elapsed) {
+            count.increment();
+            if (size > 0) {
+                bytes.add(size);
+            }
+            nanos.add(elapsed);
+            int bucket = Math.min(LATENCY_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(1, elapsed)));
+            latency.incrementAndGet(bucket);
+        }
+
+        public String getName() {
+            return type.getName();
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        public long getAverageNanos() {
+            long total = count.sum();
+            return total == 0 ? 0 : nanos.sum() / total;
+        }
+
+        // Upper bound of the power-of-two bucket holding the given percentile
+        public long getPercentileNanos(double percentile) {
+            long total = 0;
+            for (int i = 0; i < LATENCY_BUCKETS; i++) {
+                total += latency.get(i);
+            }
+            long target = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < LATENCY_BUCKETS; i++) {
+                seen += latency.get(i);
+                if (seen >= target && seen > 0)
+                    return 1L << i;
+            }
+            return 0;
+        }
+    }
+}
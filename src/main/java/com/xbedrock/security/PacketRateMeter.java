@@ -0,0 +1,75 @@
+package com.xbedrock.security;
+
+import io.netty.util.AttributeKey;
+
+public class PacketRateMeter {
+    public static final AttributeKey<PacketRateMeter> KEY = AttributeKey.valueOf("xbedrock_rate_meter");
+
+    private static final int BUCKETS = 8;
+    private static final int BUCKET_MASK = BUCKETS - 1;
+
+    // Only touched from the channel's event loop, so plain primitives are enough
+    private final long[] counts;
+    private long bucketWidth;
+    private long currentBucket;
+    private long total;
+    private long lastViolationBucket;
+
+    public PacketRateMeter() {
+        this.counts = new long[BUCKETS];
+        this.lastViolationBucket = -1;
+    }
+
+    // Returns false when the packet pushes the channel over its limit for the sliding window
+    public boolean record(long now, long windowMillis, long maxPackets) {
+        long width = Math.max(1, windowMillis / BUCKETS);
+        if (width != bucketWidth) {
+            // Window was reconfigured, start over with the new bucket size
+            reset(width);
+        }
+
+        advance(now / width);
+        if (total >= maxPackets)
+            return false;
+
+        counts[(int) (currentBucket & BUCKET_MASK)]++;
+        total++;
+        return true;
+    }
+
+    // True once per bucket while over the limit, so a flood counts as one violation rather than thousands
+    public boolean shouldReportViolation() {
+        if (lastViolationBucket == currentBucket)
+            return false;
+        lastViolationBucket = currentBucket;
+        return true;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    private void advance(long bucket) {
+        if (bucket <= currentBucket)
+            return;
+
+        // Expire every bucket that fell out of the window, at most one full lap
+        long expired = Math.min(bucket - currentBucket, BUCKETS);
+        for (long i = 1; i <= expired; i++) {
+            int index = (int) ((currentBucket + i) & BUCKET_MASK);
+            total -= counts[index];
+            counts[index] = 0;
+        }
+        currentBucket = bucket;
+    }
+
+    private void reset(long width) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = 0;
+        }
+        bucketWidth = width;
+        currentBucket = 0;
+        total = 0;
+        lastViolationBucket = -1;
+    }
+}
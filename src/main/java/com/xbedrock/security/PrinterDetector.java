@@ -0,0 +1,138 @@
+package com.xbedrock.security;
+
+import io.netty.util.AttributeKey;
+
+public class PrinterDetector {
+    public static final AttributeKey<PrinterDetector> KEY = AttributeKey.valueOf("xbedrock_printer");
+
+    private static final int PLACE_CAPACITY = 128;
+    private static final int DIG_CAPACITY = 32;
+    private static final int ENTROPY_BINS = 16;
+    private static final long BIN_WIDTH = 25; // milliseconds per interval bin
+    private static final int EVALUATE_EVERY = 8;
+    private static final double LOG_2 = Math.log(2);
+
+    public enum Verdict {
+        UNKNOWN, HUMAN, PRINTER
+    }
+
+    // Only touched from the channel's event loop
+    private final long[] placeTimes;
+    private final long[] digTimes;
+    private final int[] bins;
+    private int placeCount;
+    private int placeHead;
+    private int digCount;
+    private int digHead;
+    private int sinceEvaluation;
+    private Verdict verdict;
+    private double lastVariation;
+    private double lastEntropy;
+
+    public PrinterDetector() {
+        this.placeTimes = new long[PLACE_CAPACITY];
+        this.digTimes = new long[DIG_CAPACITY];
+        this.bins = new int[ENTROPY_BINS];
+        this.verdict = Verdict.UNKNOWN;
+    }
+
+    public void recordDig(long now) {
+        digTimes[digHead] = now;
+        digHead = (digHead + 1) % DIG_CAPACITY;
+        if (digCount < DIG_CAPACITY)
+            digCount++;
+    }
+
+    // Returns the verdict after this placement; only recomputed every few placements
+    public Verdict recordPlace(long now, SecurityRules rules) {
+        placeTimes[placeHead] = now;
+        placeHead = (placeHead + 1) % PLACE_CAPACITY;
+        if (placeCount < PLACE_CAPACITY)
+            placeCount++;
+
+        int samples = Math.min(rules.getPrinterPacketThreshold(), PLACE_CAPACITY);
+        if (placeCount < samples || ++sinceEvaluation < EVALUATE_EVERY)
+            return verdict;
+
+        sinceEvaluation = 0;
+        verdict = evaluate(samples, rules);
+        return verdict;
+    }
+
+    public Verdict getVerdict() {
+        return verdict;
+    }
+
+    public double getLastVariation() {
+        return lastVariation;
+    }
+
+    public double getLastEntropy() {
+        return lastEntropy;
+    }
+
+    private Verdict evaluate(int samples, SecurityRules rules) {
+        int intervals = samples - 1;
+        if (intervals < 2)
+            return Verdict.UNKNOWN;
+
+        // Welford's running mean/variance over the most recent inter-arrival times
+        double mean = 0;
+        double m2 = 0;
+        for (int i = 0; i < ENTROPY_BINS; i++) {
+            bins[i] = 0;
+        }
+
+        long newer = placeTimes[index(placeHead, 1, PLACE_CAPACITY)];
+        for (int i = 1; i <= intervals; i++) {
+            long older = placeTimes[index(placeHead, i + 1, PLACE_CAPACITY)];
+            long interval = newer - older;
+            newer = older;
+
+            double delta = interval - mean;
+            mean += delta / i;
+            m2 += delta * (interval - mean);
+            bins[(int) Math.min(ENTROPY_BINS - 1, Math.max(0, interval / BIN_WIDTH))]++;
+        }
+
+        long windowStart = placeTimes[index(placeHead, samples, PLACE_CAPACITY)];
+        double variation = mean > 0 ? Math.sqrt(m2 / intervals) / mean : 0;
+        double entropy = entropy(intervals);
+        lastVariation = variation;
+        lastEntropy = entropy;
+
+        // Players who are also breaking blocks are building by hand, whatever their rhythm
+        if (countDigsSince(windowStart) * 2 > samples)
+            return Verdict.HUMAN;
+
+        boolean fast = mean <= rules.getPrinterMaxInterval();
+        boolean regular = variation <= rules.getPrinterMaxVariation() && entropy <= rules.getPrinterMaxEntropy();
+        return fast && regular ? Verdict.PRINTER : Verdict.HUMAN;
+    }
+
+    // Shannon entropy in bits of the binned interval distribution; robotic timing piles into one or two bins
+    private double entropy(int total) {
+        double entropy = 0;
+        for (int i = 0; i < ENTROPY_BINS; i++) {
+            if (bins[i] == 0)
+                continue;
+            double p = (double) bins[i] / total;
+            entropy -= p * (Math.log(p) / LOG_2);
+        }
+        return entropy;
+    }
+
+    private int countDigsSince(long since) {
+        int count = 0;
+        for (int i = 1; i <= digCount; i++) {
+            if (digTimes[index(digHead, i, DIG_CAPACITY)] >= since)
+                count++;
+        }
+        return count;
+    }
+
+    // The nth most recent slot before head
+    private static int index(int head, int back, int capacity) {
+        return (head - back + capacity) % capacity;
+    }
+}
@@ -0,0 +1,51 @@
+package com.xbedrock.security;
+
+import com.xbedrock.session.PlayerSession;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+
+// One instance shared by every channel; all per-channel state lives in channel attributes
+@ChannelHandler.Sharable
+public class SecurityChannelHandler extends ChannelInboundHandlerAdapter {
+    public static final String NAME = "xbedrock_security";
+    public static final AttributeKey<PlayerSession> SESSION = AttributeKey.valueOf("xbedrock_session");
+
+    private final SecurityManager securityManager;
+    private final PacketProfiler profiler;
+
+    public SecurityChannelHandler(SecurityManager securityManager, PacketProfiler profiler) {
+        this.securityManager = securityManager;
+        this.profiler = profiler;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        boolean allowed;
+        PacketProfiler.Session session = profiler.getSession();
+        if (session == null) {
+            allowed = securityManager.handlePacket(ctx.channel(), msg);
+        } else {
+            long start = System.nanoTime();
+            allowed = securityManager.handlePacket(ctx.channel(), msg);
+            long elapsed = System.nanoTime() - start;
+            session.record(securityManager.getPacketType(msg), securityManager.getPacketSize(ctx.channel(), msg),
+                    elapsed);
+        }
+
+        if (!allowed) {
+            // Drop the packet if it's malicious
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        securityManager.unregisterChannel(ctx.channel());
+        ctx.fireChannelInactive();
+    }
+}
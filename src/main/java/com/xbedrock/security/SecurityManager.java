@@ -1,41 +1,50 @@
 package com.xbedrock.security;
 
 import com.xbedrock.XBedrockPlugin;
+import com.xbedrock.session.PlayerSession;
 import io.netty.channel.Channel;
-import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
-import org.bukkit.event.player.PlayerQuitEvent;
 
+import java.io.File;
+import java.net.SocketAddress;
 import java.util.Map;
-import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 public class SecurityManager implements Listener {
     private final XBedrockPlugin plugin;
-    private final Map<UUID, PlayerSecurityData> playerData;
-    private final Map<String, AtomicInteger> packetViolations;
-    private final Map<UUID, Long> lastPacketTime;
-    private final Map<UUID, Integer> printerModePlayers;
-
-    // Configuration values
-    private static final int MAX_PACKETS_PER_SECOND = 100;
-    private static final int MAX_PACKET_SIZE = 2097152; // 2MB
-    private static final int VIOLATION_THRESHOLD = 5;
-    private static final long PACKET_TIMEOUT = 1000; // 1 second
-    private static final int PRINTER_MODE_PACKET_THRESHOLD = 50;
+    private final Map<SocketAddress, Channel> channelsByAddress;
+    private final PacketClassifier packetClassifier;
+    private final PacketLogger packetLogger;
+    private final ViolationPipeline violationPipeline;
+    private final PacketProfiler packetProfiler;
+    private final SecurityChannelHandler channelHandler;
+    private final FrameSizeHandler frameSizeHandler;
+    private final ChannelInjector channelInjector;
+
+    private static final String PRE_LOGIN_NAME = "-";
+
+    // Compiled from config/security.yml and swapped as a whole on reload
+    private volatile SecurityRules rules;
 
     public SecurityManager(XBedrockPlugin plugin) {
         this.plugin = plugin;
-        this.playerData = new ConcurrentHashMap<>();
-        this.packetViolations = new ConcurrentHashMap<>();
-        this.lastPacketTime = new ConcurrentHashMap<>();
-        this.printerModePlayers = new ConcurrentHashMap<>();
+        this.channelsByAddress = new ConcurrentHashMap<>();
+        this.packetClassifier = new PacketClassifier(plugin);
+        this.packetLogger = new PacketLogger(plugin);
+        this.violationPipeline = new ViolationPipeline(plugin);
+        this.packetProfiler = new PacketProfiler();
+        this.channelHandler = new SecurityChannelHandler(this, packetProfiler);
+        this.frameSizeHandler = new FrameSizeHandler();
+        this.channelInjector = new ChannelInjector(plugin, this::initChannel);
+
+        // Load configuration
+        loadSecurityConfig();
 
         // Register events
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
@@ -44,212 +53,246 @@ public class SecurityManager implements Listener {
         initializeNettyHandlers();
     }
 
+    private void loadSecurityConfig() {
+        File configFile = new File(plugin.getDataFolder(), "config/security.yml");
+        if (!configFile.exists()) {
+            plugin.saveResource("config/security.yml", false);
+        }
+
+        FileConfiguration config = YamlConfiguration.loadConfiguration(configFile);
+        SecurityRules rules = SecurityRules.compile(packetClassifier, config);
+        this.rules = rules;
+
+        // Packet capture runs on its own writer thread, started the first time logging is enabled
+        if (rules.isPacketLogging()) {
+            packetLogger.configure(new File(plugin.getDataFolder(), rules.getLogFile()),
+                    rules.getLogMaxSize(), rules.getLogMaxFiles());
+            packetLogger.start();
+        }
+    }
+
+    public void reload() {
+        loadSecurityConfig();
+        plugin.getLogger().info("Security rules reloaded");
+    }
+
     private void initializeNettyHandlers() {
-        // Add Netty handler to all channels
-        plugin.getServer().getOnlinePlayers().forEach(this::addNettyHandler);
+        // Cover every new connection from the handshake onward
+        if (!channelInjector.inject()) {
+            plugin.getLogger().warning("Could not hook server channel initialization, falling back to per-join injection");
+        }
+
+        // Players that were already online when the plugin enabled
+        plugin.getServer().getOnlinePlayers().forEach(this::bindPlayer);
+    }
+
+    // Runs on the channel's event loop right after the server has built its pipeline
+    private void initChannel(Channel channel) {
+        if (!channel.isActive() || channel.pipeline().get(SecurityChannelHandler.NAME) != null)
+            return;
+        // Appending after the packet handler would never see a packet, so leave the channel alone
+        if (channel.pipeline().get("packet_handler") == null) {
+            plugin.getLogger().warning("No packet_handler in the pipeline of " + channel.remoteAddress()
+                    + ", security checks skipped for this connection");
+            return;
+        }
+
+        channel.attr(PacketRateMeter.KEY).set(new PacketRateMeter());
+        channel.attr(PrinterDetector.KEY).set(new PrinterDetector());
+        channel.attr(FrameSizeHandler.KEY).set(new FrameSizeHandler.Frame());
+        if (channel.pipeline().get("decoder") != null) {
+            channel.pipeline().addBefore("decoder", FrameSizeHandler.NAME, frameSizeHandler);
+        }
+        channel.pipeline().addBefore("packet_handler", SecurityChannelHandler.NAME, channelHandler);
+
+        SocketAddress address = channel.remoteAddress();
+        if (address != null) {
+            channelsByAddress.put(address, channel);
+        }
+    }
+
+    void unregisterChannel(Channel channel) {
+        SocketAddress address = channel.remoteAddress();
+        if (address != null) {
+            channelsByAddress.remove(address, channel);
+        }
     }
 
-    private void addNettyHandler(Player player) {
-        try {
-            Object connection = player.getClass().getMethod("getHandle").invoke(player);
-            Object networkManager = connection.getClass().getField("b").get(connection);
-            Channel channel = (Channel) networkManager.getClass().getMethod("getChannel").invoke(networkManager);
+    private void bindPlayer(Player player) {
+        PlayerSession session = plugin.getSessionManager().getSession(player);
+        if (session == null)
+            return;
 
-            // Add our custom handler
-            channel.pipeline().addBefore("packet_handler", "xbedrock_security", new ChannelInboundHandlerAdapter() {
-                @Override
-                public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-                    if (!handlePacket(player, msg)) {
-                        // Drop the packet if it's malicious
-                        return;
-                    }
-                    super.channelRead(ctx, msg);
-                }
-            });
-        } catch (Exception e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to add Netty handler for " + player.getName(), e);
+        Channel channel = player.getAddress() != null ? channelsByAddress.get(player.getAddress()) : null;
+        if (channel == null) {
+            // Channels opened before the hook (or by proxies that hide the address) still need the handler
+            try {
+                channel = plugin.getPlayerIntrospector().getChannel(player);
+                initChannel(channel);
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to add Netty handler for " + player.getName(), e);
+                return;
+            }
         }
+
+        channel.attr(SecurityChannelHandler.SESSION).set(session);
     }
 
-    private boolean handlePacket(Player player, Object packet) {
-        UUID playerId = player.getUniqueId();
-        String packetName = packet.getClass().getSimpleName();
-        long currentTime = System.currentTimeMillis();
+    boolean handlePacket(Channel channel, Object packet) {
+        // One volatile read per packet; a concurrent reload never mixes old and new rules
+        SecurityRules rules = this.rules;
+        SecurityRules.PacketRule rule = rules.getRule(packet);
 
-        // Initialize player data if needed
-        playerData.computeIfAbsent(playerId, k -> new PlayerSecurityData());
-        PlayerSecurityData data = playerData.get(playerId);
+        // Null until the player has joined; packets from the handshake and login are still checked
+        PlayerSession session = channel.attr(SecurityChannelHandler.SESSION).get();
+        ViolationPipeline.PlayerViolations violations = session != null ? session.getViolations() : null;
+
+        int size = getPacketSize(channel, packet);
 
         // Check for Netty crasher
-        if (isNettyCrasher(packet)) {
-            handleViolation(player, "NettyCrasher");
+        if (isNettyCrasher(size, packet, rule, rules)) {
+            handleViolation(channel, violations, SecurityRules.ViolationType.NETTY_CRASHER);
             return false;
         }
 
         // Check packet rate
-        if (!checkPacketRate(playerId, currentTime)) {
-            handleViolation(player, "PacketRate");
+        PacketRateMeter rateMeter = channel.attr(PacketRateMeter.KEY).get();
+        if (rules.isRateLimiting() && !checkPacketRate(rateMeter, rules)) {
+            if (rateMeter.shouldReportViolation()) {
+                handleViolation(channel, violations, SecurityRules.ViolationType.PACKET_RATE);
+            }
             return false;
         }
 
         // Check for printer/schematica
-        if (isPrinterMode(packet)) {
-            printerModePlayers.put(playerId, PRINTER_MODE_PACKET_THRESHOLD);
+        if (session != null && rule.isPrinterCheck()) {
+            checkPrinterMode(channel, session, packet, rule, rules);
         }
 
         // Log packet if enabled
-        if (plugin.getConfigManager().isPacketLoggingEnabled()) {
-            logPacket(player, packet);
+        if (rule.isLogged()) {
+            logPacket(violations != null ? violations.getPlayer().getName() : PRE_LOGIN_NAME, size, rule);
         }
 
         return true;
     }
 
-    private boolean isNettyCrasher(Object packet) {
-        // Check for common Netty crasher patterns
-        String packetName = packet.getClass().getSimpleName();
-        int packetSize = packet.toString().length();
+    PacketClassifier.PacketType getPacketType(Object packet) {
+        return packetClassifier.getType(packet.getClass());
+    }
 
-        // Check for oversized packets
-        if (packetSize > MAX_PACKET_SIZE) {
-            return true;
+    // Real byte size: the buffer itself, or the frame the decoder just turned into this packet
+    int getPacketSize(Channel channel, Object packet) {
+        int size = PacketClassifier.getSize(packet);
+        if (size < 0) {
+            FrameSizeHandler.Frame frame = channel.attr(FrameSizeHandler.KEY).get();
+            if (frame != null) {
+                size = frame.getSize();
+            }
         }
+        return size;
+    }
 
-        // Check for specific crasher packets
-        if (packetName.contains("CustomPayload") ||
-                packetName.contains("TabComplete") ||
-                packetName.contains("WindowClick")) {
+    private boolean isNettyCrasher(int size, Object packet, SecurityRules.PacketRule rule, SecurityRules rules) {
+        // Check for oversized packets using the real buffer size
+        if (rules.isSizeValidation() && size > rules.getMaxPacketSize()) {
+            return true;
+        }
 
-            // Additional checks for these packet types
-            try {
-                // Check for malicious payload data
-                if (packetName.contains("CustomPayload")) {
-                    Object data = packet.getClass().getMethod("getData").invoke(packet);
-                    if (data != null && data.toString().length() > 1000) {
-                        return true;
-                    }
-                }
-            } catch (Exception e) {
-                // If we can't check the packet, assume it's safe
-                return false;
-            }
+        // Check for malicious payload data in inspected packet types
+        if (rule.isInspectPayload()) {
+            Object payload = packetClassifier.readPayload(rule.getType(), packet);
+            return PacketClassifier.getSize(payload) > rules.getMaxPayloadSize();
         }
 
         return false;
     }
 
-    private boolean checkPacketRate(UUID playerId, long currentTime) {
-        AtomicInteger violations = packetViolations.computeIfAbsent(playerId.toString(), k -> new AtomicInteger(0));
-        Long lastTime = lastPacketTime.get(playerId);
-
-        if (lastTime != null) {
-            long timeDiff = currentTime - lastTime;
-            if (timeDiff < PACKET_TIMEOUT) {
-                // Increment violation counter
-                if (violations.incrementAndGet() > VIOLATION_THRESHOLD) {
-                    return false;
-                }
-            } else {
-                // Reset violation counter if enough time has passed
-                violations.set(0);
-            }
-        }
-
-        lastPacketTime.put(playerId, currentTime);
-        return true;
+    private boolean checkPacketRate(PacketRateMeter rateMeter, SecurityRules rules) {
+        return rateMeter.record(System.currentTimeMillis(), rules.getTimeWindow(), rules.getMaxPacketsPerWindow());
     }
 
-    private boolean isPrinterMode(Object packet) {
-        // Check for printer/schematica patterns
-        String packetName = packet.getClass().getSimpleName();
-
-        if (packetName.contains("BlockPlace") ||
-                packetName.contains("BlockDig") ||
-                packetName.contains("UseItem")) {
-
-            try {
-                // Check for rapid block placement
-                if (packetName.contains("BlockPlace")) {
-                    Object face = packet.getClass().getMethod("getFace").invoke(packet);
-                    if (face != null && face.toString().equals("UP")) {
-                        return true;
-                    }
-                }
-            } catch (Exception e) {
-                // If we can't check the packet, assume it's safe
-                return false;
+    private void checkPrinterMode(Channel channel, PlayerSession session, Object packet, SecurityRules.PacketRule rule,
+            SecurityRules rules) {
+        PrinterDetector detector = channel.attr(PrinterDetector.KEY).get();
+        long now = System.currentTimeMillis();
+        if (rule.getType().getCategory() == PacketClassifier.Category.BLOCK_DIG) {
+            if (rule.getType().isDig(packet)) {
+                detector.recordDig(now);
             }
+            return;
         }
 
-        return false;
-    }
-
-    private void handleViolation(Player player, String type) {
-        UUID playerId = player.getUniqueId();
-        PlayerSecurityData data = playerData.get(playerId);
-
-        if (data != null) {
-            data.addViolation(type);
+        PrinterDetector.Verdict previous = detector.getVerdict();
+        PrinterDetector.Verdict verdict = detector.recordPlace(now, rules);
+        if (verdict == previous)
+            return;
 
-            // Check if player should be kicked
-            if (data.getViolations(type) >= VIOLATION_THRESHOLD) {
-                plugin.getServer().getScheduler().runTask(plugin, () -> {
-                    player.kickPlayer("§cSecurity violation detected: " + type);
-                    plugin.getLogger().warning("Kicked " + player.getName() + " for security violation: " + type);
-                });
-            }
+        if (verdict == PrinterDetector.Verdict.PRINTER) {
+            session.setPrinterDetectedAt(now);
+            handleViolation(channel, session.getViolations(), SecurityRules.ViolationType.PRINTER_MODE);
+        } else {
+            session.setPrinterDetectedAt(0);
         }
     }
 
-    private void logPacket(Player player, Object packet) {
-        // Log packet details to file
-        String logMessage = String.format("[%s] %s: %s",
-                player.getName(),
-                packet.getClass().getSimpleName(),
-                packet.toString());
+    private void handleViolation(Channel channel, ViolationPipeline.PlayerViolations violations,
+            SecurityRules.ViolationType type) {
+        if (violations != null) {
+            violationPipeline.report(violations, type, rules);
+        } else if (type == SecurityRules.ViolationType.NETTY_CRASHER) {
+            // No player to kick yet, so drop the connection itself
+            channel.close();
+        }
+    }
 
-        plugin.getLogger().info(logMessage);
+    private void logPacket(String playerName, int size, SecurityRules.PacketRule rule) {
+        // Hand the record to the writer thread; formatting and disk I/O never run on the event loop
+        packetLogger.log(System.currentTimeMillis(), playerName, rule.getName(), size);
     }
 
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
-        addNettyHandler(player);
+        bindPlayer(player);
     }
 
-    @EventHandler
-    public void onPlayerQuit(PlayerQuitEvent event) {
-        Player player = event.getPlayer();
-        UUID playerId = player.getUniqueId();
-
-        // Clean up player data
-        playerData.remove(playerId);
-        packetViolations.remove(playerId.toString());
-        lastPacketTime.remove(playerId);
-        printerModePlayers.remove(playerId);
+    public void shutdown() {
+        channelInjector.uninject();
+        for (Channel channel : channelsByAddress.values()) {
+            if (channel.pipeline().get(SecurityChannelHandler.NAME) != null) {
+                channel.pipeline().remove(SecurityChannelHandler.NAME);
+            }
+            if (channel.pipeline().get(FrameSizeHandler.NAME) != null) {
+                channel.pipeline().remove(FrameSizeHandler.NAME);
+            }
+        }
+        channelsByAddress.clear();
+        violationPipeline.shutdown();
+        packetLogger.shutdown();
     }
 
-    public boolean isPrinterModeEnabled(Player player) {
-        return printerModePlayers.containsKey(player.getUniqueId());
+    public PacketProfiler getPacketProfiler() {
+        return packetProfiler;
     }
 
-    public void disablePrinterMode(Player player) {
-        printerModePlayers.remove(player.getUniqueId());
+    public SecurityRules getRules() {
+        return rules;
     }
 
-    private static class PlayerSecurityData {
-        private final Map<String, Integer> violations;
-
-        public PlayerSecurityData() {
-            this.violations = new ConcurrentHashMap<>();
-        }
+    public long getDroppedPacketLogs() {
+        return packetLogger.getDroppedRecords();
+    }
 
-        public void addViolation(String type) {
-            violations.merge(type, 1, Integer::sum);
-        }
+    public boolean isPrinterModeEnabled(Player player) {
+        PlayerSession session = plugin.getSessionManager().getSession(player);
+        return session != null && session.isPrinterMode();
+    }
 
-        public int getViolations(String type) {
-            return violations.getOrDefault(type, 0);
+    public void disablePrinterMode(Player player) {
+        PlayerSession session = plugin.getSessionManager().getSession(player);
+        if (session != null) {
+            session.setPrinterDetectedAt(0);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,299 @@
+package com.xbedrock.security;
+
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.List;
+
+public class SecurityRules {
+    public enum ViolationType {
+        NETTY_CRASHER("netty-crasher", "NettyCrasher", false),
+        PACKET_RATE("packet-rate", "PacketRate", false),
+        // The printer verdict already needs packet-threshold placements, so it acts immediately
+        PRINTER_MODE("printer-mode", "PrinterMode", true);
+
+        private final String configKey;
+        private final String displayName;
+        private final boolean immediate;
+
+        ViolationType(String configKey, String displayName, boolean immediate) {
+            this.configKey = configKey;
+            this.displayName = displayName;
+            this.immediate = immediate;
+        }
+
+        public boolean isImmediate() {
+            return immediate;
+        }
+
+        public String getConfigKey() {
+            return configKey;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    public enum Action {
+        KICK, WARN, NONE;
+
+        static Action parse(String value, Action fallback) {
+            if (value == null)
+                return fallback;
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return fallback;
+            }
+        }
+    }
+
+    private final PacketClassifier classifier;
+
+    // Packet settings
+    private final int maxPacketsPerSecond;
+    private final long maxPacketSize;
+    private final long timeWindow;
+    private final int violationThreshold;
+    private final long violationDecay;
+
+    // Netty protection
+    private final int maxPayloadSize;
+    private final String[] inspectedPackets;
+
+    // Printer detection
+    private final boolean printerDetection;
+    private final int printerPacketThreshold;
+    private final Action printerAction;
+    private final long printerMaxInterval;
+    private final double printerMaxVariation;
+    private final double printerMaxEntropy;
+
+    // Packet logging
+    private final boolean packetLogging;
+    private final String logFile;
+    private final long logMaxSize;
+    private final int logMaxFiles;
+    private final String[] loggedPackets;
+
+    // Advanced toggles
+    private final boolean sizeValidation;
+    private final boolean rateLimiting;
+
+    private final ViolationRule[] violationRules;
+
+    // Dispatch table compiled lazily per packet class for this snapshot; a reload builds a new one
+    private final ClassValue<PacketRule> packetRules;
+
+    private SecurityRules(PacketClassifier classifier, FileConfiguration config) {
+        this.classifier = classifier;
+
+        this.maxPacketsPerSecond = Math.max(1, config.getInt("packet.max-per-second", 100));
+        this.maxPacketSize = config.getLong("packet.max-size", 2097152);
+        this.timeWindow = Math.max(1, config.getLong("packet.time-window", 1000));
+        this.violationThreshold = Math.max(1, config.getInt("packet.violation-threshold", 5));
+        this.violationDecay = Math.max(1, config.getLong("packet.violation-decay", 30000));
+
+        this.sizeValidation = config.getBoolean("advanced.size-validation", true);
+        // Payload inspection reads the payload out of the decoded packet through reflection
+        boolean nettyProtection = config.getBoolean("netty.enabled", true) && sizeValidation
+                && config.getBoolean("advanced.reflection-inspection", true);
+        this.maxPayloadSize = config.getInt("netty.max-payload-size", 1000);
+        this.inspectedPackets = nettyProtection ? toArray(config.getStringList("netty.blocked-packets")) : new String[0];
+
+        this.printerDetection = config.getBoolean("printer.enabled", true)
+                && config.getBoolean("advanced.printer-detection", true);
+        this.printerPacketThreshold = config.getInt("printer.packet-threshold", 50);
+        this.printerAction = Action.parse(config.getString("printer.action", "warn"), Action.WARN);
+        this.printerMaxInterval = config.getLong("printer.max-interval", 250);
+        this.printerMaxVariation = config.getDouble("printer.max-variation", 0.2);
+        this.printerMaxEntropy = config.getDouble("printer.max-entropy", 1.5);
+
+        this.packetLogging = config.getBoolean("logging.enabled", false)
+                || config.getBoolean("advanced.packet-logging", false);
+        this.logFile = config.getString("logging.file", "logs/packets.log");
+        this.logMaxSize = Math.max(1, config.getLong("logging.max-file-size", 10485760));
+        this.logMaxFiles = Math.max(1, config.getInt("logging.max-files", 5));
+        this.loggedPackets = toArray(config.getStringList("logging.packet-types"));
+
+        this.rateLimiting = config.getBoolean("advanced.rate-limiting", true);
+
+        ViolationType[] types = ViolationType.values();
+        this.violationRules = new ViolationRule[types.length];
+        for (ViolationType type : types) {
+            String path = "violations." + type.getConfigKey();
+            Action fallback = type == ViolationType.PRINTER_MODE ? printerAction : Action.KICK;
+            violationRules[type.ordinal()] = new ViolationRule(
+                    Action.parse(config.getString(path + ".action"), fallback),
+                    config.getString(path + ".message", "§cSecurity violation detected: " + type.getDisplayName()));
+        }
+
+        this.packetRules = new ClassValue<>() {
+            @Override
+            protected PacketRule computeValue(Class<?> type) {
+                return compile(type);
+            }
+        };
+    }
+
+    public static SecurityRules compile(PacketClassifier classifier, FileConfiguration config) {
+        return new SecurityRules(classifier, config);
+    }
+
+    public PacketRule getRule(Object packet) {
+        return packetRules.get(packet.getClass());
+    }
+
+    private PacketRule compile(Class<?> packetClass) {
+        PacketClassifier.PacketType type = classifier.getType(packetClass);
+        String name = type.getName();
+
+        boolean inspectPayload = type.getCategory() == PacketClassifier.Category.CUSTOM_PAYLOAD
+                && matches(name, inspectedPackets);
+        boolean printerCheck = printerDetection && (type.getCategory() == PacketClassifier.Category.BLOCK_PLACE
+                || type.getCategory() == PacketClassifier.Category.BLOCK_DIG);
+        boolean logged = packetLogging && (loggedPackets.length == 0 || matches(name, loggedPackets));
+
+        return new PacketRule(type, inspectPayload, printerCheck, logged);
+    }
+
+    private static boolean matches(String name, String[] patterns) {
+        for (String pattern : patterns) {
+            if (name.contains(pattern))
+                return true;
+        }
+        return false;
+    }
+
+    private static String[] toArray(List<String> values) {
+        return values == null ? new String[0] : values.toArray(new String[0]);
+    }
+
+    public int getMaxPacketsPerSecond() {
+        return maxPacketsPerSecond;
+    }
+
+    public long getMaxPacketSize() {
+        return maxPacketSize;
+    }
+
+    public long getTimeWindow() {
+        return timeWindow;
+    }
+
+    public long getMaxPacketsPerWindow() {
+        return Math.max(1, maxPacketsPerSecond * timeWindow / 1000);
+    }
+
+    public int getViolationThreshold() {
+        return violationThreshold;
+    }
+
+    public long getViolationDecay() {
+        return violationDecay;
+    }
+
+    public int getMaxPayloadSize() {
+        return maxPayloadSize;
+    }
+
+    public boolean isPrinterDetection() {
+        return printerDetection;
+    }
+
+    public int getPrinterPacketThreshold() {
+        return printerPacketThreshold;
+    }
+
+    public long getPrinterMaxInterval() {
+        return printerMaxInterval;
+    }
+
+    public double getPrinterMaxVariation() {
+        return printerMaxVariation;
+    }
+
+    public double getPrinterMaxEntropy() {
+        return printerMaxEntropy;
+    }
+
+    public boolean isPacketLogging() {
+        return packetLogging;
+    }
+
+    public String getLogFile() {
+        return logFile;
+    }
+
+    public long getLogMaxSize() {
+        return logMaxSize;
+    }
+
+    public int getLogMaxFiles() {
+        return logMaxFiles;
+    }
+
+    public boolean isSizeValidation() {
+        return sizeValidation;
+    }
+
+    public boolean isRateLimiting() {
+        return rateLimiting;
+    }
+
+    public ViolationRule getViolationRule(ViolationType type) {
+        return violationRules[type.ordinal()];
+    }
+
+    public static class PacketRule {
+        private final PacketClassifier.PacketType type;
+        private final boolean inspectPayload;
+        private final boolean printerCheck;
+        private final boolean logged;
+
+        PacketRule(PacketClassifier.PacketType type, boolean inspectPayload, boolean printerCheck, boolean logged) {
+            this.type = type;
+            this.inspectPayload = inspectPayload;
+            this.printerCheck = printerCheck;
+            this.logged = logged;
+        }
+
+        public PacketClassifier.PacketType getType() {
+            return type;
+        }
+
+        public String getName() {
+            return type.getName();
+        }
+
+        public boolean isInspectPayload() {
+            return inspectPayload;
+        }
+
+        public boolean isPrinterCheck() {
+            return printerCheck;
+        }
+
+        public boolean isLogged() {
+            return logged;
+        }
+    }
+
+    public static class ViolationRule {
+        private final Action action;
+        private final String message;
+
+        ViolationRule(Action action, String message) {
+            this.action = action;
+            this.message = message;
+        }
+
+        public Action getAction() {
+            return action;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.xbedrock.security;
+
+import com.xbedrock.XBedrockPlugin;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ViolationPipeline {
+    private final XBedrockPlugin plugin;
+
+    // Players with an action waiting for the next tick; each player appears at most once
+    private final Queue<PlayerViolations> pending;
+    private final BukkitTask dispatchTask;
+
+    public ViolationPipeline(XBedrockPlugin plugin) {
+        this.plugin = plugin;
+        this.pending = new ConcurrentLinkedQueue<>();
+
+        // Drain every pending action in one batch per tick
+        this.dispatchTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::dispatch, 1L, 1L);
+    }
+
+    // Safe to call from Netty event loops
+    public void report(PlayerViolations violations, SecurityRules.ViolationType type, SecurityRules rules) {
+        double score = violations.record(type, System.currentTimeMillis(), rules.getViolationDecay());
+        if (!type.isImmediate() && score < rules.getViolationThreshold())
+            return;
+
+        SecurityRules.Action action = rules.getViolationRule(type).getAction();
+        if (action == SecurityRules.Action.NONE)
+            return;
+
+        // Only the first violation to claim the slot enqueues; later ones may only escalate a warning to a kick
+        SecurityRules.ViolationType previous = violations.pendingType.getAndUpdate(current -> current == null
+                || (action == SecurityRules.Action.KICK && rules.getViolationRule(current).getAction() != action)
+                ? type : current);
+        if (previous == null) {
+            pending.add(violations);
+        }
+    }
+
+    private void dispatch() {
+        SecurityRules rules = plugin.getSecurityManager().getRules();
+        PlayerViolations violations;
+        while ((violations = pending.poll()) != null) {
+            SecurityRules.ViolationType type = violations.pendingType.getAndSet(null);
+            Player player = violations.getPlayer();
+            if (type == null || !player.isOnline())
+                continue;
+
+            SecurityRules.ViolationRule rule = rules.getViolationRule(type);
+            switch (rule.getAction()) {
+                case KICK:
+                    player.kickPlayer(rule.getMessage());
+                    plugin.getLogger().warning("Kicked " + player.getName() + " for security violation: "
+                            + type.getDisplayName());
+                    break;
+                case WARN:
+                    player.sendMessage(rule.getMessage());
+                    plugin.getLogger().warning("Warned " + player.getName() + " for security violation: "
+                            + type.getDisplayName());
+                    // Start counting again so a warning is not repeated every tick
+                    violations.clear(type);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    public void shutdown() {
+        dispatchTask.cancel();
+        pending.clear();
+    }
+
+    public static class PlayerViolations {
+        private final Player player;
+        private final double[] scores;
+        private final long[] lastUpdate;
+        private final AtomicReference<SecurityRules.ViolationType> pendingType;
+
+        public PlayerViolations(Player player) {
+            int types = SecurityRules.ViolationType.values().length;
+            this.player = player;
+            this.scores = new double[types];
+            this.lastUpdate = new long[types];
+            this.pendingType = new AtomicReference<>();
+        }
+
+        public Player getPlayer() {
+            return player;
+        }
+
+        // Scores halve every decay period, so sporadic violations fade instead of accumulating forever
+        public synchronized double record(SecurityRules.ViolationType type, long now, long halfLife) {
+            int index = type.ordinal();
+            double score = decayed(index, now, halfLife) + 1.0;
+            scores[index] = score;
+            lastUpdate[index] = now;
+            return score;
+        }
+
+        public synchronized double getScore(SecurityRules.ViolationType type, long now, long halfLife) {
+            return decayed(type.ordinal(), now, halfLife);
+        }
+
+        public synchronized void clear(SecurityRules.ViolationType type) {
+            scores[type.ordinal()] = 0;
+        }
+
+        private double decayed(int index, long now, long halfLife) {
+            long elapsed = now - lastUpdate[index];
+            if (elapsed <= 0 || scores[index] == 0)
+                return scores[index];
+            return scores[index] * Math.pow(0.5, (double) elapsed / halfLife);
+        }
+    }
+}
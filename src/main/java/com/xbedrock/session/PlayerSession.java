@@ -0,0 +1,117 @@
+package com.xbedrock.session;
+
+import com.xbedrock.connection.BedrockConnection;
+import com.xbedrock.connection.PingSampler;
+import com.xbedrock.pvp.PvPManager;
+import com.xbedrock.security.ViolationPipeline;
+import org.bukkit.entity.Player;
+
+import java.net.InetAddress;
+import java.util.UUID;
+
+// All per-player state shared across managers, created on login and dropped on quit
+public class PlayerSession {
+    private final UUID uuid;
+    private final Player player;
+    private final int index;
+    private final long createdAt;
+
+    // Connection state
+    private final String address;
+    private volatile BedrockConnection bedrockConnection;
+    private final PingSampler.PingHistory pingHistory;
+
+    // Security state; written from Netty event loops
+    private final ViolationPipeline.PlayerViolations violations;
+    private volatile long printerDetectedAt;
+
+    // PvP state
+    private final PvPManager.CombatData combatData;
+    private long lastAttackTime;
+    private double attackCooldown;
+
+    PlayerSession(Player player, InetAddress address, int index) {
+        this.uuid = player.getUniqueId();
+        this.player = player;
+        this.index = index;
+        this.createdAt = System.currentTimeMillis();
+        this.address = address != null ? address.getHostAddress() : null;
+        this.pingHistory = new PingSampler.PingHistory();
+        this.violations = new ViolationPipeline.PlayerViolations(player);
+        this.combatData = new PvPManager.CombatData();
+        this.attackCooldown = 1.0;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    // Dense slot number, reused after quit; suitable for indexing arrays
+    public int getIndex() {
+        return index;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public BedrockConnection getBedrockConnection() {
+        return bedrockConnection;
+    }
+
+    public void setBedrockConnection(BedrockConnection bedrockConnection) {
+        this.bedrockConnection = bedrockConnection;
+    }
+
+    public boolean isBedrock() {
+        return bedrockConnection != null;
+    }
+
+    public PingSampler.PingHistory getPingHistory() {
+        return pingHistory;
+    }
+
+    public ViolationPipeline.PlayerViolations getViolations() {
+        return violations;
+    }
+
+    public boolean isPrinterMode() {
+        return printerDetectedAt != 0;
+    }
+
+    public long getPrinterDetectedAt() {
+        return printerDetectedAt;
+    }
+
+    public void setPrinterDetectedAt(long printerDetectedAt) {
+        this.printerDetectedAt = printerDetectedAt;
+    }
+
+    public PvPManager.CombatData getCombatData() {
+        return combatData;
+    }
+
+    public long getLastAttackTime() {
+        return lastAttackTime;
+    }
+
+    public void setLastAttackTime(long lastAttackTime) {
+        this.lastAttackTime = lastAttackTime;
+    }
+
+    public double getAttackCooldown() {
+        return attackCooldown;
+    }
+
+    public void setAttackCooldown(double attackCooldown) {
+        this.attackCooldown = attackCooldown;
+    }
+}
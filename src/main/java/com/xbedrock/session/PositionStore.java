@@ -0,0 +1,129 @@
+package com.xbedrock.session;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.Arrays;
+
+// Last known positions as parallel primitive arrays indexed by session index.
+// Only touched from the main thread.
+public class PositionStore {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int NO_WORLD = -1;
+
+    private double[] x;
+    private double[] y;
+    private double[] z;
+    private float[] yaw;
+    private float[] pitch;
+    private int[] worldIds;
+    private long[] updatedAt;
+
+    // Interned worlds; a server has a handful, so an identity scan beats hashing the name
+    private World[] worlds;
+    private int worldCount;
+
+    public PositionStore() {
+        this.worlds = new World[4];
+        allocate(INITIAL_CAPACITY);
+    }
+
+    public void update(int index, Location location, long now) {
+        ensureCapacity(index + 1);
+        x[index] = location.getX();
+        y[index] = location.getY();
+        z[index] = location.getZ();
+        yaw[index] = location.getYaw();
+        pitch[index] = location.getPitch();
+        worldIds[index] = internWorld(location.getWorld());
+        updatedAt[index] = now;
+    }
+
+    public void clear(int index) {
+        if (index >= updatedAt.length)
+            return;
+        worldIds[index] = NO_WORLD;
+        updatedAt[index] = 0;
+    }
+
+    public boolean hasPosition(int index) {
+        return index < worldIds.length && worldIds[index] != NO_WORLD;
+    }
+
+    public long getUpdatedAt(int index) {
+        return index < updatedAt.length ? updatedAt[index] : 0;
+    }
+
+    public double getX(int index) {
+        return x[index];
+    }
+
+    public double getY(int index) {
+        return y[index];
+    }
+
+    public double getZ(int index) {
+        return z[index];
+    }
+
+    public float getYaw(int index) {
+        return yaw[index];
+    }
+
+    public float getPitch(int index) {
+        return pitch[index];
+    }
+
+    public World getWorld(int index) {
+        int worldId = index < worldIds.length ? worldIds[index] : NO_WORLD;
+        return worldId != NO_WORLD ? worlds[worldId] : null;
+    }
+
+    public String getWorldName(int index) {
+        World world = getWorld(index);
+        return world != null ? world.getName() : null;
+    }
+
+    // Copies the stored position into an existing Location instead of allocating one
+    public Location getLocation(int index, Location reuse) {
+        reuse.setWorld(getWorld(index));
+        reuse.setX(x[index]);
+        reuse.setY(y[index]);
+        reuse.setZ(z[index]);
+        reuse.setYaw(yaw[index]);
+        reuse.setPitch(pitch[index]);
+        return reuse;
+    }
+
+    private int internWorld(World world) {
+        if (world == null)
+            return NO_WORLD;
+        for (int i = 0; i < worldCount; i++) {
+            if (worlds[i] == world)
+                return i;
+        }
+        if (worldCount == worlds.length) {
+            worlds = Arrays.copyOf(worlds, worldCount * 2);
+        }
+        worlds[worldCount] = world;
+        return worldCount++;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= updatedAt.length)
+            return;
+        allocate(Math.max(required, updatedAt.length * 2));
+    }
+
+    private void allocate(int capacity) {
+        int previous = updatedAt != null ? updatedAt.length : 0;
+        x = previous == 0 ? new double[capacity] : Arrays.copyOf(x, capacity);
+        y = previous == 0 ? new double[capacity] : Arrays.copyOf(y, capacity);
+        z = previous == 0 ? new double[capacity] : Arrays.copyOf(z, capacity);
+        yaw = previous == 0 ? new float[capacity] : Arrays.copyOf(yaw, capacity);
+        pitch = previous == 0 ? new float[capacity] : Arrays.copyOf(pitch, capacity);
+        worldIds = previous == 0 ? new int[capacity] : Arrays.copyOf(worldIds, capacity);
+        updatedAt = previous == 0 ? new long[capacity] : Arrays.copyOf(updatedAt, capacity);
+        Arrays.fill(worldIds, previous, capacity, NO_WORLD);
+    }
+}
@@ -0,0 +1,112 @@
+package com.xbedrock.session;
+
+import com.xbedrock.XBedrockPlugin;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.net.InetAddress;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class SessionManager implements Listener {
+    private final XBedrockPlugin plugin;
+    private final Map<UUID, PlayerSession> sessions;
+    private final Deque<Integer> freeIndices;
+    private final PositionStore positions;
+    private int nextIndex;
+
+    public SessionManager(XBedrockPlugin plugin) {
+        this.plugin = plugin;
+        this.sessions = new ConcurrentHashMap<>();
+        this.freeIndices = new ArrayDeque<>();
+        this.positions = new PositionStore();
+
+        // Register events
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+
+        // Players that were already online when the plugin enabled
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            openSession(player, player.getAddress() != null ? player.getAddress().getAddress() : null);
+        }
+    }
+
+    // Opened first so every other login handler can see the session. The player has no socket
+    // address yet during login, so the event's address is used.
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        openSession(event.getPlayer(), event.getAddress());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLoginResult(PlayerLoginEvent event) {
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            closeSession(event.getPlayer().getUniqueId());
+        }
+    }
+
+    // Closed last; other managers must finish their quit handling below MONITOR
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        closeSession(event.getPlayer().getUniqueId());
+    }
+
+    public PlayerSession getSession(UUID uuid) {
+        return sessions.get(uuid);
+    }
+
+    public PlayerSession getSession(Player player) {
+        return sessions.get(player.getUniqueId());
+    }
+
+    public Collection<PlayerSession> getSessions() {
+        return sessions.values();
+    }
+
+    // Keyed by session index; main thread only
+    public PositionStore getPositionStore() {
+        return positions;
+    }
+
+    // Upper bound of session indices handed out so far
+    public synchronized int getIndexCapacity() {
+        return nextIndex;
+    }
+
+    public void shutdown() {
+        sessions.clear();
+        synchronized (this) {
+            freeIndices.clear();
+            nextIndex = 0;
+        }
+    }
+
+    private PlayerSession openSession(Player player, InetAddress address) {
+        return sessions.computeIfAbsent(player.getUniqueId(),
+                uuid -> new PlayerSession(player, address, allocateIndex()));
+    }
+
+    private void closeSession(UUID uuid) {
+        PlayerSession session = sessions.remove(uuid);
+        if (session != null) {
+            positions.clear(session.getIndex());
+            releaseIndex(session.getIndex());
+        }
+    }
+
+    private synchronized int allocateIndex() {
+        Integer index = freeIndices.poll();
+        return index != null ? index : nextIndex++;
+    }
+
+    private synchronized void releaseIndex(int index) {
+        freeIndices.push(index);
+    }
+}
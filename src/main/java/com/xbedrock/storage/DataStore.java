@@ -0,0 +1,112 @@
+package com.xbedrock.storage;
+
+import com.xbedrock.XBedrockPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+
+// Shared per-player record store for player data, webstore and Roblox state. Everything lives in
+// one segment store under store/; records missing there are read from the old per-UUID JSON
+// files and move over the next time they are saved.
+public class DataStore {
+    private static final long FORCE_INTERVAL = 100; // 5 seconds
+    private static final long COMPACT_INTERVAL = 6000; // 5 minutes
+
+    private final XBedrockPlugin plugin;
+    private final SegmentStore store;
+    private BukkitTask forceTask;
+    private BukkitTask compactTask;
+
+    public enum Namespace {
+        PLAYER_DATA(1, "playerdata"),
+        WEBSTORE(2, "webstore"),
+        ROBLOX(3, "roblox");
+
+        private final int id;
+        private final String legacyFolder;
+
+        Namespace(int id, String legacyFolder) {
+            this.id = id;
+            this.legacyFolder = legacyFolder;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getLegacyFolder() {
+            return legacyFolder;
+        }
+    }
+
+    public DataStore(XBedrockPlugin plugin) throws IOException {
+        this.plugin = plugin;
+        this.store = SegmentStore.open(new File(plugin.getDataFolder(), "store"), plugin.getLogger());
+        plugin.getLogger().info("Loaded " + store.getKeyCount() + " records from " + store.getSegmentCount()
+                + " segments");
+
+        forceTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, store::force,
+                FORCE_INTERVAL, FORCE_INTERVAL);
+        compactTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::compact,
+                COMPACT_INTERVAL, COMPACT_INTERVAL);
+    }
+
+    public byte[] get(Namespace namespace, UUID uuid) throws IOException {
+        byte[] value = store.get(namespace.getId(), uuid);
+        if (value != null)
+            return value;
+        return readLegacy(namespace, uuid);
+    }
+
+    public void put(Namespace namespace, UUID uuid, byte[] value) throws IOException {
+        store.put(namespace.getId(), uuid, value);
+    }
+
+    public void putAll(Namespace namespace, Map<UUID, byte[]> values) throws IOException {
+        store.putAll(namespace.getId(), values);
+    }
+
+    public SegmentStore getStore() {
+        return store;
+    }
+
+    public void shutdown() {
+        if (forceTask != null) {
+            forceTask.cancel();
+        }
+        if (compactTask != null) {
+            compactTask.cancel();
+        }
+        try {
+            store.close();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to close data store", e);
+        }
+    }
+
+    private void compact() {
+        try {
+            int removed = store.compact();
+            if (removed > 0) {
+                plugin.getLogger().info("Compacted " + removed + " data store segments");
+            }
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Data store compaction failed", e);
+        }
+    }
+
+    private byte[] readLegacy(Namespace namespace, UUID uuid) throws IOException {
+        File file = new File(new File(plugin.getDataFolder(), namespace.getLegacyFolder()), uuid + ".json");
+        try {
+            return Files.readAllBytes(file.toPath());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+}
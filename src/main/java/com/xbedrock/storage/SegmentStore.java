@@ -0,0 +1,424 @@
+package com.xbedrock.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Log-structured key-value store. Records are appended to memory-mapped segment files and an
+// in-memory index maps each key to its latest record. Old segments are rewritten by compact()
+// once most of their records have been superseded.
+//
+// Record layout: magic, namespace, uuid (msb, lsb), value length, value, crc32 of everything
+// between the magic and the crc. Recovery replays segments in order and stops a segment at the
+// first record that is incomplete or fails its checksum.
+public class SegmentStore {
+    private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int MAGIC = 0x58425331; // "XBS1"
+    private static final int HEADER_SIZE = 4 + 1 + 16 + 4;
+    private static final int RECORD_OVERHEAD = HEADER_SIZE + 4;
+    private static final double COMPACT_LIVE_RATIO = 0.5;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.log");
+
+    private final Path directory;
+    private final Logger logger;
+    private final Map<Key, Entry> index;
+    private final ConcurrentSkipListMap<Integer, Segment> segments;
+    private final Object writeLock = new Object();
+    private volatile Segment active;
+    private volatile boolean closed;
+
+    private SegmentStore(Path directory, Logger logger) {
+        this.directory = directory;
+        this.logger = logger;
+        this.index = new ConcurrentHashMap<>();
+        this.segments = new ConcurrentSkipListMap<>();
+    }
+
+    public static SegmentStore open(File directory, Logger logger) throws IOException {
+        SegmentStore store = new SegmentStore(directory.toPath(), logger);
+        Files.createDirectories(store.directory);
+        store.recover();
+        return store;
+    }
+
+    public byte[] get(int namespace, UUID uuid) {
+        Entry entry = index.get(new Key(namespace, uuid));
+        if (entry == null)
+            return null;
+
+        // Retired segments stay mapped until collected, so a racing compaction cannot break this read
+        byte[] value = new byte[entry.length - RECORD_OVERHEAD];
+        entry.segment.buffer.get(entry.offset + HEADER_SIZE, value);
+        return value;
+    }
+
+    public boolean contains(int namespace, UUID uuid) {
+        return index.containsKey(new Key(namespace, uuid));
+    }
+
+    public void put(int namespace, UUID uuid, byte[] value) throws IOException {
+        Key key = new Key(namespace, uuid);
+        byte[] record = encode(key, value);
+        synchronized (writeLock) {
+            ensureOpen();
+            index(key, append(record));
+        }
+    }
+
+    public void putAll(int namespace, Map<UUID, byte[]> values) throws IOException {
+        synchronized (writeLock) {
+            ensureOpen();
+            for (Map.Entry<UUID, byte[]> value : values.entrySet()) {
+                Key key = new Key(namespace, value.getKey());
+                index(key, append(encode(key, value.getValue())));
+            }
+        }
+    }
+
+    // Flushes dirty pages of the active segment to disk
+    public void force() {
+        Segment segment = active;
+        if (segment != null && !closed) {
+            segment.buffer.force();
+        }
+    }
+
+    // Rewrites the live records of sealed segments that are mostly garbage, then deletes them.
+    // Returns the number of segments removed.
+    public int compact() throws IOException {
+        int removed = 0;
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (closed)
+                break;
+            if (segment == active || segment.liveBytes.get() > segment.end * COMPACT_LIVE_RATIO)
+                continue;
+
+            // Copy out whatever the index still points at in this segment
+            int offset = 0;
+            while (offset < segment.end) {
+                int length = recordLength(segment.buffer, offset, segment.end);
+                if (length == 0)
+                    break;
+                Key key = readKey(segment.buffer, offset);
+                Entry current = index.get(key);
+                if (current != null && current.segment == segment && current.offset == offset) {
+                    byte[] record = new byte[length];
+                    segment.buffer.get(offset, record);
+                    synchronized (writeLock) {
+                        ensureOpen();
+                        // Only move it if nothing newer was written in the meantime
+                        if (index.get(key) == current) {
+                            index(key, append(record));
+                        }
+                    }
+                }
+                offset += length;
+            }
+
+            // The copies must be on disk before the originals go away
+            force();
+            segments.remove(segment.id);
+            segment.channel.close();
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                segment.path.toFile().deleteOnExit();
+            }
+            removed++;
+        }
+        return removed;
+    }
+
+    // The records written at or after since, listed under the write lock together with the position
+    // just past the newest record. A write or compaction during the scan could otherwise move a key
+    // past that watermark before it is visited, and the key would be missing from both sides.
+    public Snapshot snapshotSince(long since) throws IOException {
+        synchronized (writeLock) {
+            ensureOpen();
+            Segment segment = active;
+            long watermark = position(segment.id, segment.end);
+            List<Map.Entry<Key, Entry>> entries = new ArrayList<>();
+            for (Map.Entry<Key, Entry> indexed : index.entrySet()) {
+                Entry entry = indexed.getValue();
+                if (position(entry.segment.id, entry.offset) >= since) {
+                    entries.add(Map.entry(indexed.getKey(), entry));
+                }
+            }
+            return new Snapshot(watermark, entries);
+        }
+    }
+
+    public int getKeyCount() {
+        return index.size();
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public long getLiveBytes() {
+        long live = 0;
+        for (Segment segment : segments.values()) {
+            live += segment.liveBytes.get();
+        }
+        return live;
+    }
+
+    public long getUsedBytes() {
+        long used = 0;
+        for (Segment segment : segments.values()) {
+            used += segment.end;
+        }
+        return used;
+    }
+
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (closed)
+                return;
+            closed = true;
+            IOException failure = null;
+            for (Segment segment : segments.values()) {
+                try {
+                    segment.buffer.force();
+                    segment.channel.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            if (failure != null)
+                throw failure;
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(path -> {
+                Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    ids.add(Integer.parseInt(matcher.group(1)));
+                }
+            });
+        }
+        ids.sort(null);
+
+        boolean tornTail = false;
+        for (int id : ids) {
+            Segment segment = openSegment(id);
+            segments.put(id, segment);
+
+            int offset = 0;
+            int limit = segment.buffer.capacity();
+            int length;
+            while ((length = recordLength(segment.buffer, offset, limit)) > 0) {
+                index(readKey(segment.buffer, offset), new Entry(segment, offset, length));
+                offset += length;
+            }
+            segment.end = offset;
+            // Anything but zeroes after the last good record means a write was cut short
+            tornTail = offset + 4 <= limit && segment.buffer.getInt(offset) != 0;
+            if (tornTail) {
+                logger.warning("Discarded a partial record at " + segment.path.getFileName() + ":" + offset);
+            }
+        }
+
+        // Never append after garbage, or a later recovery could pick up stale bytes past our records
+        if (segments.isEmpty() || tornTail) {
+            active = createSegment(segments.isEmpty() ? 1 : segments.lastKey() + 1);
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+    }
+
+    // Size of the valid record at offset, or 0 if there is none
+    private static int recordLength(ByteBuffer buffer, int offset, int limit) {
+        if (offset + RECORD_OVERHEAD > limit || buffer.getInt(offset) != MAGIC)
+            return 0;
+        int valueLength = buffer.getInt(offset + HEADER_SIZE - 4);
+        if (valueLength < 0 || valueLength > limit - offset - RECORD_OVERHEAD)
+            return 0;
+
+        int crcOffset = offset + HEADER_SIZE + valueLength;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset + 4, crcOffset - offset - 4));
+        if ((int) crc.getValue() != buffer.getInt(crcOffset))
+            return 0;
+        return valueLength + RECORD_OVERHEAD;
+    }
+
+    private static long position(int segmentId, int offset) {
+        return ((long) segmentId << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static Key readKey(ByteBuffer buffer, int offset) {
+        return new Key(buffer.get(offset + 4), buffer.getLong(offset + 5), buffer.getLong(offset + 13));
+    }
+
+    private static byte[] encode(Key key, byte[] value) throws IOException {
+        if (value.length > SEGMENT_SIZE - RECORD_OVERHEAD)
+            throw new IOException("Record of " + value.length + " bytes does not fit in a segment");
+
+        byte[] record = new byte[value.length + RECORD_OVERHEAD];
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        buffer.putInt(MAGIC);
+        buffer.put((byte) key.namespace);
+        buffer.putLong(key.msb);
+        buffer.putLong(key.lsb);
+        buffer.putInt(value.length);
+        buffer.put(value);
+
+        CRC32 crc = new CRC32();
+        crc.update(record, 4, HEADER_SIZE - 4 + value.length);
+        buffer.putInt((int) crc.getValue());
+        return record;
+    }
+
+    // Caller holds writeLock
+    private Entry append(byte[] record) throws IOException {
+        if (active.end + record.length > active.buffer.capacity()) {
+            active.buffer.force();
+            active = createSegment(active.id + 1);
+        }
+        int offset = active.end;
+        active.buffer.put(offset, record);
+        active.end = offset + record.length;
+        return new Entry(active, offset, record.length);
+    }
+
+    private void index(Key key, Entry entry) {
+        entry.segment.liveBytes.addAndGet(entry.length);
+        Entry previous = index.put(key, entry);
+        if (previous != null) {
+            previous.segment.liveBytes.addAndGet(-previous.length);
+        }
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        Segment segment = openSegment(id);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private Segment openSegment(int id) throws IOException {
+        Path path = directory.resolve(String.format("segment-%06d.log", id));
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), SEGMENT_SIZE);
+        return new Segment(id, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("Store is closed");
+    }
+
+    public interface RecordVisitor {
+        void visit(int namespace, UUID uuid, byte[] value) throws IOException;
+    }
+
+    public static final class Snapshot {
+        private final long watermark;
+        private final List<Map.Entry<Key, Entry>> entries;
+
+        private Snapshot(long watermark, List<Map.Entry<Key, Entry>> entries) {
+            this.watermark = watermark;
+            this.entries = entries;
+        }
+
+        public long getWatermark() {
+            return watermark;
+        }
+
+        // Compacted segments stay mapped while an entry still points into them, so reads stay valid
+        public int forEach(RecordVisitor visitor) throws IOException {
+            for (Map.Entry<Key, Entry> listed : entries) {
+                Key key = listed.getKey();
+                Entry entry = listed.getValue();
+                byte[] value = new byte[entry.length - RECORD_OVERHEAD];
+                entry.segment.buffer.get(entry.offset + HEADER_SIZE, value);
+                visitor.visit(key.namespace, new UUID(key.msb, key.lsb), value);
+            }
+            return entries.size();
+        }
+    }
+
+    private static final class Segment {
+        private final int id;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final AtomicLong liveBytes = new AtomicLong();
+        // End of the last record; only moves under writeLock, and never for sealed segments
+        private volatile int end;
+
+        private Segment(int id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    private static final class Entry {
+        private final Segment segment;
+        private final int offset;
+        private final int length;
+
+        private Entry(Segment segment, int offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static final class Key {
+        private final int namespace;
+        private final long msb;
+        private final long lsb;
+
+        private Key(int namespace, UUID uuid) {
+            this(namespace, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        }
+
+        private Key(int namespace, long msb, long lsb) {
+            this.namespace = namespace & 0xFF;
+            this.msb = msb;
+            this.lsb = lsb;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return namespace == other.namespace && msb == other.msb && lsb == other.lsb;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * namespace + Long.hashCode(msb)) + Long.hashCode(lsb);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.xbedrock.storage;
+
+import com.xbedrock.XBedrockPlugin;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+// Coordinated final save on disable. Each manager that holds unsaved state registers a
+// participant. The barrier first asks every participant, on the main thread and in registration
+// order, to capture its dirty state. The writes then run in parallel, one task per participant,
+// and must all finish before a shared deadline. Anything that fails or misses it is reported.
+public class ShutdownBarrier {
+    private static final long DEFAULT_TIMEOUT = 30; // seconds
+
+    private final XBedrockPlugin plugin;
+    private final Map<String, Participant> participants;
+    private final long timeoutMillis;
+
+    // Main thread: snapshot whatever is dirty and return the task that writes it. The task runs on
+    // a worker thread and returns the number of records it could not save. Null means nothing to do.
+    public interface Participant {
+        Callable<Integer> prepareFlush();
+    }
+
+    public ShutdownBarrier(XBedrockPlugin plugin) {
+        this.plugin = plugin;
+        this.participants = new LinkedHashMap<>();
+        this.timeoutMillis = TimeUnit.SECONDS.toMillis(
+                Math.max(1, plugin.getConfig().getLong("storage.shutdown-timeout", DEFAULT_TIMEOUT)));
+    }
+
+    public synchronized void register(String name, Participant participant) {
+        participants.put(name, participant);
+    }
+
+    // Returns the total number of records left unsaved
+    public synchronized int flush() {
+        long start = System.currentTimeMillis();
+        List<String> names = new ArrayList<>();
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (Map.Entry<String, Participant> entry : participants.entrySet()) {
+            try {
+                Callable<Integer> task = entry.getValue().prepareFlush();
+                if (task != null) {
+                    names.add(entry.getKey());
+                    tasks.add(task);
+                }
+            } catch (RuntimeException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to prepare " + entry.getKey() + " for shutdown", e);
+            }
+        }
+        participants.clear();
+        if (tasks.isEmpty())
+            return 0;
+
+        AtomicInteger threadId = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(tasks.size(), Runtime.getRuntime().availableProcessors()), runnable -> {
+                    Thread thread = new Thread(runnable, "XBedrock-Shutdown-" + threadId.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        int unsaved = 0;
+        List<String> failed = new ArrayList<>();
+        try {
+            // Tasks still running at the deadline are cancelled
+            List<Future<Integer>> results = executor.invokeAll(tasks, timeoutMillis, TimeUnit.MILLISECONDS);
+            for (int i = 0; i < results.size(); i++) {
+                String name = names.get(i);
+                try {
+                    int count = results.get(i).get();
+                    if (count > 0) {
+                        unsaved += count;
+                        failed.add(name + " (" + count + " unsaved)");
+                    }
+                } catch (CancellationException e) {
+                    failed.add(name + " (timed out)");
+                } catch (ExecutionException e) {
+                    plugin.getLogger().log(Level.SEVERE, "Failed to save " + name, e.getCause());
+                    failed.add(name + " (failed)");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed.add("interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        if (failed.isEmpty()) {
+            plugin.getLogger().info("Saved " + String.join(", ", names) + " in " + elapsed + "ms");
+        } else {
+            plugin.getLogger().severe("Shutdown save incomplete after " + elapsed + "ms: " + String.join(", ", failed));
+        }
+        return unsaved;
+    }
+}
@@ -0,0 +1,337 @@
+package com.xbedrock.webstore;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.xbedrock.XBedrockPlugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+// Receives purchase and refund notifications pushed by the webstore. Workers only verify the
+// signature, parse the event and drop duplicates. Fulfilment is queued and drained on the main
+// thread in batches, because it touches player state.
+public class WebhookServer {
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final String SIGNATURE_HEADER = "X-Signature";
+    private static final int MAX_BODY_SIZE = 64 * 1024;
+    private static final int MAX_BATCH = 50; // events fulfilled per tick
+    private static final long REPLAY_WINDOW = TimeUnit.MINUTES.toMillis(5);
+    private static final long DEDUPE_WINDOW = TimeUnit.HOURS.toMillis(1);
+    private static final long DEDUPE_CLEANUP_INTERVAL = 1200; // 1 minute
+    private static final long WORKER_SHUTDOWN_TIMEOUT = 5; // seconds
+
+    private final XBedrockPlugin plugin;
+    private final WebstoreManager webstoreManager;
+    private final byte[] secret;
+    // Mac is not thread-safe, and re-initialising one per request is the expensive part
+    private final ThreadLocal<Mac> macs;
+    // Transaction ids seen recently, with the time they arrived
+    private final Map<String, Long> seen;
+    private final Queue<WebhookEvent> pending;
+    // Set while the dispatcher thread runs an exchange the full worker pool turned away
+    private final ThreadLocal<Boolean> overloaded;
+    private final LongAdder received = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private HttpServer server;
+    private ThreadPoolExecutor workers;
+    private BukkitTask drainTask;
+    private BukkitTask cleanupTask;
+
+    public WebhookServer(XBedrockPlugin plugin, WebstoreManager webstoreManager, String secret) {
+        this.plugin = plugin;
+        this.webstoreManager = webstoreManager;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.macs = ThreadLocal.withInitial(this::createMac);
+        this.seen = new ConcurrentHashMap<>();
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.overloaded = new ThreadLocal<>();
+    }
+
+    public void start(String host, int port, String path, int threads, int queueSize) throws IOException {
+        // Fail on startup rather than on the first webhook if HMAC is unavailable
+        createMac();
+
+        AtomicInteger threadId = new AtomicInteger();
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "XBedrock-Webhook-" + threadId.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, this::reject);
+
+        server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        server.createContext(path, this::handle);
+        server.setExecutor(workers);
+        server.start();
+
+        drainTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::drain, 1, 1);
+        cleanupTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::cleanup,
+                DEDUPE_CLEANUP_INTERVAL, DEDUPE_CLEANUP_INTERVAL);
+        plugin.getLogger().info("Listening for webstore webhooks on " + host + ":" + port + path);
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(1);
+            server = null;
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+            // A worker that already answered 202 may still be queueing its event
+            try {
+                if (!workers.awaitTermination(WORKER_SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                    plugin.getLogger().warning("Webhook workers did not stop in time");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (drainTask != null) {
+            drainTask.cancel();
+        }
+        if (cleanupTask != null) {
+            cleanupTask.cancel();
+        }
+        // Anything still queued has been acknowledged, so fulfil it now rather than drop it
+        drain(Integer.MAX_VALUE);
+    }
+
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    public long getDuplicateCount() {
+        return duplicates.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    // The exchange cannot be reached from the queued task, so it runs on the dispatcher thread
+    // instead, flagged so handle() only answers 503. The webstore retries it later.
+    private void reject(Runnable exchange, ThreadPoolExecutor executor) {
+        overloaded.set(Boolean.TRUE);
+        try {
+            exchange.run();
+        } finally {
+            overloaded.remove();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (overloaded.get() != null) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 503);
+                return;
+            }
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405);
+                return;
+            }
+            byte[] body = readBody(exchange.getRequestBody());
+            if (body == null) {
+                respond(exchange, 413);
+                return;
+            }
+            if (!verify(body, exchange.getRequestHeaders().getFirst(SIGNATURE_HEADER))) {
+                rejected.increment();
+                respond(exchange, 401);
+                return;
+            }
+
+            WebhookEvent event = parse(body);
+            if (event == null) {
+                rejected.increment();
+                respond(exchange, 400);
+                return;
+            }
+            received.increment();
+
+            // The webstore retries until it sees a 2xx, so duplicates are acknowledged and ignored
+            if (seen.putIfAbsent(event.getType() + ":" + event.getTransactionId(), System.currentTimeMillis()) != null) {
+                duplicates.increment();
+                respond(exchange, 200);
+                return;
+            }
+            pending.add(event);
+            respond(exchange, 202);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private boolean verify(byte[] body, String signature) {
+        if (signature == null)
+            return false;
+        if (signature.startsWith("sha256=")) {
+            signature = signature.substring(7);
+        }
+        byte[] expected = macs.get().doFinal(body);
+        byte[] actual;
+        try {
+            actual = fromHex(signature);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    private WebhookEvent parse(byte[] body) {
+        try {
+            JSONObject data = (JSONObject) new JSONParser().parse(new String(body, StandardCharsets.UTF_8));
+            String type = (String) data.get("type");
+            String transactionId = (String) data.get("transactionId");
+            String playerId = (String) data.get("playerId");
+            String itemId = (String) data.get("itemId");
+            Number timestamp = (Number) data.get("timestamp");
+            if (type == null || transactionId == null || playerId == null || itemId == null || timestamp == null)
+                return null;
+            if (!type.equals("purchase") && !type.equals("refund"))
+                return null;
+            // A signed but stale event is a replay
+            if (Math.abs(System.currentTimeMillis() - timestamp.longValue()) > REPLAY_WINDOW)
+                return null;
+            return new WebhookEvent(type, transactionId, UUID.fromString(playerId), itemId, timestamp.longValue());
+        } catch (ParseException | ClassCastException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void drain() {
+        drain(MAX_BATCH);
+    }
+
+    // Main thread
+    private void drain(int limit) {
+        WebhookEvent event;
+        for (int i = 0; i < limit && (event = pending.poll()) != null; i++) {
+            try {
+                if (event.getType().equals("purchase")) {
+                    webstoreManager.fulfilPurchase(event.getPlayerId(), event.getItemId(), event.getTransactionId(),
+                            event.getTimestamp());
+                } else {
+                    webstoreManager.fulfilRefund(event.getPlayerId(), event.getItemId(), event.getTransactionId());
+                }
+            } catch (RuntimeException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to fulfil webstore " + event.getType() + " "
+                        + event.getTransactionId(), e);
+            }
+        }
+    }
+
+    private void cleanup() {
+        long cutoff = System.currentTimeMillis() - DEDUPE_WINDOW;
+        Iterator<Long> iterator = seen.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() < cutoff) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private Mac createMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret, HMAC_ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to initialise " + HMAC_ALGORITHM, e);
+        }
+    }
+
+    // Null if the body is larger than MAX_BODY_SIZE
+    private static byte[] readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (out.size() + read > MAX_BODY_SIZE)
+                return null;
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static void respond(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+        OutputStream body = exchange.getResponseBody();
+        body.close();
+    }
+
+    private static byte[] fromHex(String hex) {
+        if (hex.length() % 2 != 0)
+            throw new IllegalArgumentException("Odd length");
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0)
+                throw new IllegalArgumentException("Not hex");
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+
+    public static class WebhookEvent {
+        private final String type;
+        private final String transactionId;
+        private final UUID playerId;
+        private final String itemId;
+        private final long timestamp;
+
+        public WebhookEvent(String type, String transactionId, UUID playerId, String itemId, long timestamp) {
+            this.type = type;
+            this.transactionId = transactionId;
+            this.playerId = playerId;
+            this.itemId = itemId;
+            this.timestamp = timestamp;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getTransactionId() {
+            return transactionId;
+        }
+
+        public UUID getPlayerId() {
+            return playerId;
+        }
+
+        public String getItemId() {
+            return itemId;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+}
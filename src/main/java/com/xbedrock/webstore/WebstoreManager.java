@@ -2,6 +2,7 @@ package com.xbedrock.webstore;
 
 import com.xbedrock.XBedrockPlugin;
 import com.xbedrock.player.PlayerData;
+import com.xbedrock.storage.DataStore;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -19,12 +20,25 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 
 public class WebstoreManager implements Listener {
@@ -35,12 +49,26 @@ public class WebstoreManager implements Listener {
     private final File dataFolder;
     private final HttpClient httpClient;
     private final JSONParser jsonParser;
+    // In-flight purchases and refunds by operation, so repeated clicks do not send a second request
+    private final Map<String, CompletableFuture<?>> pendingRequests;
+    // Purchases and refunds that never got a definitive answer; repeating one resends it unchanged
+    private final Map<String, UnresolvedRequest> unresolvedRequests;
+    private final Executor mainThread;
+    private WebhookServer webhookServer;
+    private final WebstoreSync sync;
     private boolean enabled;
     private String apiEndpoint;
     private String apiKey;
     private String webhookSecret;
     private static final int MAX_PURCHASE_HISTORY = 100;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+    private static final long REQUEST_DEADLINE = 30; // seconds, across all attempts
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY = 500; // milliseconds, doubled per attempt
     private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int DEFAULT_WEBHOOK_PORT = 8765;
+    private static final int DEFAULT_WEBHOOK_THREADS = 4;
+    private static final int DEFAULT_WEBHOOK_QUEUE = 256;
 
     public WebstoreManager(XBedrockPlugin plugin) {
         this.plugin = plugin;
@@ -50,9 +78,16 @@ public class WebstoreManager implements Listener {
         this.dataFolder = new File(plugin.getDataFolder(), "webstore");
         this.httpClient = HttpClient.newBuilder()
                 .version(HttpClient.Version.HTTP_2)
-                .connectTimeout(java.time.Duration.ofSeconds(10))
+                .connectTimeout(Duration.ofSeconds(10))
                 .build();
         this.jsonParser = new JSONParser();
+        this.pendingRequests = new ConcurrentHashMap<>();
+        this.unresolvedRequests = new ConcurrentHashMap<>();
+        this.mainThread = runnable -> {
+            if (plugin.isEnabled()) {
+                plugin.getServer().getScheduler().runTask(plugin, runnable);
+            }
+        };
         this.enabled = false;
 
         if (!dataFolder.exists()) {
@@ -61,9 +96,42 @@ public class WebstoreManager implements Listener {
 
         // Register events
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        plugin.getShutdownBarrier().register("webstore data", this::prepareShutdownFlush);
 
         // Load store items
         loadStoreItems();
+
+        startWebhookServer();
+
+        this.sync = new WebstoreSync(plugin, this);
+        if (plugin.getConfig().getBoolean("features.webstore.auto-sync", true)) {
+            sync.start();
+        }
+    }
+
+    private void startWebhookServer() {
+        if (!plugin.getConfig().getBoolean("api.webstore.webhook.enabled", false))
+            return;
+
+        String secret = plugin.getConfig().getString("api.webstore.webhook-secret", "");
+        if (secret.isEmpty() || secret.equals("your-webhook-secret")) {
+            plugin.getLogger().warning("Webstore webhooks are enabled but api.webstore.webhook-secret is not set");
+            return;
+        }
+
+        WebhookServer server = new WebhookServer(plugin, this, secret);
+        try {
+            server.start(
+                    plugin.getConfig().getString("api.webstore.webhook.host", "0.0.0.0"),
+                    plugin.getConfig().getInt("api.webstore.webhook.port", DEFAULT_WEBHOOK_PORT),
+                    plugin.getConfig().getString("api.webstore.webhook.path", "/webstore"),
+                    Math.max(1, plugin.getConfig().getInt("api.webstore.webhook.threads", DEFAULT_WEBHOOK_THREADS)),
+                    Math.max(1, plugin.getConfig().getInt("api.webstore.webhook.queue-size", DEFAULT_WEBHOOK_QUEUE)));
+            webhookServer = server;
+        } catch (IOException | IllegalStateException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to start webstore webhook server", e);
+            server.stop();
+        }
     }
 
     private void loadStoreItems() {
@@ -148,25 +216,24 @@ public class WebstoreManager implements Listener {
             return;
 
         Player player = event.getPlayer();
-        loadPlayerData(player);
-    }
-
-    private void loadPlayerData(Player player) {
         PlayerData playerData = plugin.getPlayerDataManager().getPlayerData(player);
         if (playerData == null)
             return;
 
-        File playerFile = new File(dataFolder, player.getUniqueId().toString() + ".json");
-        if (!playerFile.exists())
-            return;
+        loadPlayerData(player.getUniqueId());
+    }
 
-        try (FileReader reader = new FileReader(playerFile)) {
-            JSONObject data = (JSONObject) jsonParser.parse(reader);
+    private void loadPlayerData(UUID uuid) {
+        try {
+            byte[] stored = plugin.getDataStore().get(DataStore.Namespace.WEBSTORE, uuid);
+            if (stored == null)
+                return;
+            JSONObject data = (JSONObject) jsonParser.parse(new String(stored, StandardCharsets.UTF_8));
 
             // Load prefix
             String prefix = (String) data.get("prefix");
             if (prefix != null) {
-                playerPrefixes.put(player.getUniqueId(), prefix);
+                playerPrefixes.put(uuid, prefix);
             }
 
             // Load purchase history
@@ -181,10 +248,67 @@ public class WebstoreManager implements Listener {
                             (long) purchaseData.get("timestamp"),
                             (String) purchaseData.get("transactionId")));
                 }
-                purchaseHistory.put(player.getUniqueId(), purchases);
+                purchaseHistory.put(uuid, purchases);
             }
         } catch (IOException | ParseException e) {
-            plugin.getLogger().severe("Failed to load webstore data for " + player.getName() + ": " + e.getMessage());
+            plugin.getLogger().severe("Failed to load webstore data for " + uuid + ": " + e.getMessage());
+        }
+    }
+
+    // Main thread: a purchase pushed by the webstore. Already-recorded transactions are ignored,
+    // so a webhook that races the purchase request's own response is applied only once.
+    public void fulfilPurchase(UUID uuid, String itemId, String transactionId, long timestamp) {
+        StoreItem item = storeItems.get(itemId);
+        if (item == null) {
+            plugin.getLogger().warning("Webhook purchase " + transactionId + " is for unknown item " + itemId);
+            return;
+        }
+
+        Player online = plugin.getServer().getPlayer(uuid);
+        boolean loaded = ensureLoaded(uuid);
+        PurchaseHistory history = purchaseHistory.computeIfAbsent(uuid, k -> new PurchaseHistory());
+        Purchase existing = history.getPurchase(itemId);
+        if (existing == null || !transactionId.equals(existing.getTransactionId())) {
+            history.addPurchase(new Purchase(itemId, timestamp, transactionId));
+            applyPurchase(uuid, item);
+            savePlayerData(uuid);
+            if (online != null) {
+                online.sendMessage("§aYour purchase of " + item.getName() + " has been delivered!");
+            }
+        }
+        releaseIfOffline(uuid, online, loaded);
+    }
+
+    // Main thread: a refund issued from the webstore side
+    public void fulfilRefund(UUID uuid, String itemId, String transactionId) {
+        Player online = plugin.getServer().getPlayer(uuid);
+        boolean loaded = ensureLoaded(uuid);
+        PurchaseHistory history = purchaseHistory.get(uuid);
+        Purchase purchase = history != null ? history.getPurchase(itemId) : null;
+        if (purchase != null && transactionId.equals(purchase.getTransactionId())) {
+            history.removePurchase(itemId);
+            removePurchase(uuid, itemId);
+            savePlayerData(uuid);
+            if (online != null) {
+                online.sendMessage("§aYour purchase has been refunded.");
+            }
+        }
+        releaseIfOffline(uuid, online, loaded);
+    }
+
+    // Stored state must be read first, or saving would overwrite it. Being online does not mean it
+    // is loaded: join skips loading while the webstore is disabled. Returns true if this call loaded it.
+    private boolean ensureLoaded(UUID uuid) {
+        if (playerPrefixes.containsKey(uuid) || purchaseHistory.containsKey(uuid))
+            return false;
+        loadPlayerData(uuid);
+        return true;
+    }
+
+    private void releaseIfOffline(UUID uuid, Player online, boolean loaded) {
+        if (online == null && loaded) {
+            playerPrefixes.remove(uuid);
+            purchaseHistory.remove(uuid);
         }
     }
 
@@ -202,64 +326,73 @@ public class WebstoreManager implements Listener {
             return;
         }
 
+        UUID uuid = player.getUniqueId();
+        String operation = "purchase:" + uuid + ":" + itemId;
+        if (pendingRequests.containsKey(operation)) {
+            player.sendMessage("§cYour purchase of " + item.getName() + " is already being processed.");
+            return;
+        }
+
         // Create purchase request
         JSONObject purchaseData = new JSONObject();
-        purchaseData.put("playerId", player.getUniqueId().toString());
+        purchaseData.put("playerId", uuid.toString());
         purchaseData.put("itemId", itemId);
         purchaseData.put("price", item.getPrice());
         purchaseData.put("currency", "USD");
         purchaseData.put("timestamp", System.currentTimeMillis());
 
-        // Send purchase request to webstore API
-        try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(apiEndpoint + "/purchase"))
-                    .header("Content-Type", "application/json")
-                    .header("Authorization", "Bearer " + apiKey)
-                    .POST(HttpRequest.BodyPublishers.ofString(purchaseData.toJSONString()))
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-            if (response.statusCode() == 200) {
-                JSONObject responseData = (JSONObject) jsonParser.parse(response.body());
-                String transactionId = (String) responseData.get("transactionId");
+        // Send purchase request to webstore API; the response is handled back on the main thread
+        CompletableFuture<String> request = post("/purchase", operation, purchaseData)
+                .thenApply(response -> {
+                    JSONObject responseData = parseResponse(response);
+                    return (String) responseData.get("transactionId");
+                });
+        pendingRequests.put(operation, request);
+        request.whenCompleteAsync((transactionId, error) -> {
+            pendingRequests.remove(operation);
+            Player online = plugin.getServer().getPlayer(uuid);
+            if (error != null) {
+                plugin.getLogger().severe("Failed to process purchase of " + itemId + " for " + uuid + ": "
+                        + unwrap(error).getMessage());
+                if (online != null) {
+                    online.sendMessage("§cFailed to process purchase. Please try again later.");
+                }
+                return;
+            }
 
-                // Add purchase to history
-                PurchaseHistory history = purchaseHistory.computeIfAbsent(player.getUniqueId(),
-                        k -> new PurchaseHistory());
-                history.addPurchase(new Purchase(itemId, System.currentTimeMillis(), transactionId));
+            // Add purchase to history; the stored state is read first so the save cannot overwrite it
+            boolean loaded = ensureLoaded(uuid);
+            PurchaseHistory history = purchaseHistory.computeIfAbsent(uuid, k -> new PurchaseHistory());
+            history.addPurchase(new Purchase(itemId, System.currentTimeMillis(), transactionId));
 
-                // Apply purchase effects
-                applyPurchase(player, item);
+            // Apply purchase effects
+            applyPurchase(uuid, item);
 
-                // Save player data
-                savePlayerData(player);
+            // Save player data
+            savePlayerData(uuid);
 
-                player.sendMessage("§aSuccessfully purchased " + item.getName() + "!");
-            } else {
-                player.sendMessage("§cFailed to process purchase. Please try again later.");
-                plugin.getLogger()
-                        .severe("Failed to process purchase for " + player.getName() + ": " + response.body());
+            if (online != null) {
+                online.sendMessage("§aSuccessfully purchased " + item.getName() + "!");
             }
-        } catch (Exception e) {
-            player.sendMessage("§cAn error occurred while processing your purchase.");
-            plugin.getLogger().severe("Error processing purchase for " + player.getName() + ": " + e.getMessage());
-        }
+            releaseIfOffline(uuid, online, loaded);
+        }, mainThread);
     }
 
-    private void applyPurchase(Player player, StoreItem item) {
+    // The player may have logged out while the request was in flight
+    private void applyPurchase(UUID uuid, StoreItem item) {
+        Player player = plugin.getServer().getPlayer(uuid);
+
         // Apply item features
         Map<String, Object> features = item.getFeatures();
 
         // Apply prefix if present
         if (features.containsKey("prefix")) {
             String prefix = (String) features.get("prefix");
-            playerPrefixes.put(player.getUniqueId(), prefix);
+            playerPrefixes.put(uuid, prefix);
         }
 
         // Apply cosmetics if enabled
-        if (features.containsKey("cosmetics") && (boolean) features.get("cosmetics")) {
+        if (player != null && features.containsKey("cosmetics") && (boolean) features.get("cosmetics")) {
             plugin.getCosmeticsManager().enableCosmetics(player);
         }
 
@@ -296,59 +429,145 @@ public class WebstoreManager implements Listener {
         if (purchase == null)
             return;
 
+        UUID uuid = player.getUniqueId();
+        String operation = "refund:" + uuid + ":" + purchase.getTransactionId();
+        if (pendingRequests.containsKey(operation)) {
+            player.sendMessage("§cYour refund is already being processed.");
+            return;
+        }
+
         // Create refund request
         JSONObject refundData = new JSONObject();
         refundData.put("transactionId", purchase.getTransactionId());
         refundData.put("reason", "Player request");
         refundData.put("timestamp", System.currentTimeMillis());
 
-        // Send refund request to webstore API
+        // Send refund request to webstore API; the response is handled back on the main thread
+        CompletableFuture<JSONObject> request = post("/refund", operation, refundData).thenApply(this::parseResponse);
+        pendingRequests.put(operation, request);
+        request.whenCompleteAsync((response, error) -> {
+            pendingRequests.remove(operation);
+            Player online = plugin.getServer().getPlayer(uuid);
+            if (error != null) {
+                plugin.getLogger().severe("Failed to process refund of " + itemId + " for " + uuid + ": "
+                        + unwrap(error).getMessage());
+                if (online != null) {
+                    online.sendMessage("§cFailed to process refund. Please try again later.");
+                }
+                return;
+            }
+
+            // Remove purchase from history
+            history.removePurchase(itemId);
+
+            // Remove purchase effects
+            removePurchase(uuid, itemId);
+
+            // Save player data
+            savePlayerData(uuid);
+
+            if (online != null) {
+                online.sendMessage("§aSuccessfully refunded your purchase!");
+            }
+        }, mainThread);
+    }
+
+    // Requests that change nothing on the webstore side
+    CompletableFuture<HttpResponse<String>> post(String path, JSONObject body) {
+        return post(path, null, body);
+    }
+
+    // A logical operation keeps one idempotency key until the webstore gives a definitive answer.
+    // Retries and a player's repeat after a failure reuse the key and the original body, so a
+    // charge or refund that landed without us seeing the response is recognised, not repeated.
+    CompletableFuture<HttpResponse<String>> post(String path, String operation, JSONObject body) {
+        UnresolvedRequest unresolved = operation != null
+                ? unresolvedRequests.computeIfAbsent(operation, k -> new UnresolvedRequest(body.toJSONString()))
+                : new UnresolvedRequest(body.toJSONString());
+        CompletableFuture<HttpResponse<String>> result;
         try {
             HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(apiEndpoint + "/refund"))
+                    .uri(URI.create(apiEndpoint + path))
+                    .timeout(REQUEST_TIMEOUT)
                     .header("Content-Type", "application/json")
                     .header("Authorization", "Bearer " + apiKey)
-                    .POST(HttpRequest.BodyPublishers.ofString(refundData.toJSONString()))
+                    .header("Idempotency-Key", unresolved.idempotencyKey)
+                    .POST(HttpRequest.BodyPublishers.ofString(unresolved.body))
                     .build();
+            result = send(request, 1, System.nanoTime() + TimeUnit.SECONDS.toNanos(REQUEST_DEADLINE));
+        } catch (IllegalArgumentException e) {
+            // Misconfigured endpoint
+            result = CompletableFuture.failedFuture(e);
+        }
+        if (operation != null) {
+            result.whenComplete((response, error) -> {
+                if (response != null && !isRetryable(response.statusCode())) {
+                    unresolvedRequests.remove(operation, unresolved);
+                }
+            });
+        }
+        return result;
+    }
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-            if (response.statusCode() == 200) {
-                // Remove purchase from history
-                history.removePurchase(itemId);
+    // Retries connection failures, timeouts, 429 and 5xx with exponential backoff. No retry is
+    // scheduled past the deadline, so the returned future only completes once nothing more is sent.
+    private CompletableFuture<HttpResponse<String>> send(HttpRequest request, int attempt, long deadline) {
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, error) -> {
+                    long backoff = RETRY_DELAY << (attempt - 1);
+                    boolean retryable = error != null ? unwrap(error) instanceof IOException
+                            : isRetryable(response.statusCode());
+                    boolean retry = retryable && attempt < MAX_ATTEMPTS
+                            && System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff) < deadline;
+                    if (!retry) {
+                        return error != null ? CompletableFuture.<HttpResponse<String>>failedFuture(unwrap(error))
+                                : CompletableFuture.completedFuture(response);
+                    }
+                    Executor delay = CompletableFuture.delayedExecutor(backoff, TimeUnit.MILLISECONDS);
+                    return CompletableFuture.supplyAsync(() -> request, delay)
+                            .thenCompose(retried -> send(retried, attempt + 1, deadline));
+                })
+                .thenCompose(Function.identity());
+    }
 
-                // Remove purchase effects
-                removePurchase(player, itemId);
+    private static boolean isRetryable(int statusCode) {
+        return statusCode == 429 || statusCode >= 500;
+    }
 
-                // Save player data
-                savePlayerData(player);
+    // Runs on the HTTP client's threads, so it cannot share the manager's parser
+    JSONObject parseResponse(HttpResponse<String> response) {
+        if (response.statusCode() != 200)
+            throw new CompletionException(new IOException("HTTP " + response.statusCode() + ": " + response.body()));
+        try {
+            return (JSONObject) new JSONParser().parse(response.body());
+        } catch (ParseException e) {
+            throw new CompletionException(new IOException("Malformed response: " + response.body(), e));
+        }
+    }
 
-                player.sendMessage("§aSuccessfully refunded your purchase!");
-            } else {
-                player.sendMessage("§cFailed to process refund. Please try again later.");
-                plugin.getLogger().severe("Failed to process refund for " + player.getName() + ": " + response.body());
-            }
-        } catch (Exception e) {
-            player.sendMessage("§cAn error occurred while processing your refund.");
-            plugin.getLogger().severe("Error processing refund for " + player.getName() + ": " + e.getMessage());
+    static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
         }
+        return error;
     }
 
-    private void removePurchase(Player player, String itemId) {
+    private void removePurchase(UUID uuid, String itemId) {
         StoreItem item = storeItems.get(itemId);
         if (item == null)
             return;
+        Player player = plugin.getServer().getPlayer(uuid);
 
         // Remove item features
         Map<String, Object> features = item.getFeatures();
 
         // Remove prefix if present
         if (features.containsKey("prefix")) {
-            playerPrefixes.remove(player.getUniqueId());
+            playerPrefixes.remove(uuid);
         }
 
         // Disable cosmetics if present
-        if (features.containsKey("cosmetics") && (boolean) features.get("cosmetics")) {
+        if (player != null && features.containsKey("cosmetics") && (boolean) features.get("cosmetics")) {
             plugin.getCosmeticsManager().disableCosmetics(player);
         }
 
@@ -367,18 +586,25 @@ public class WebstoreManager implements Listener {
         }
     }
 
-    private void savePlayerData(Player player) {
-        File playerFile = new File(dataFolder, player.getUniqueId().toString() + ".json");
+    private void savePlayerData(UUID uuid) {
+        try {
+            plugin.getDataStore().put(DataStore.Namespace.WEBSTORE, uuid, encodePlayerData(uuid));
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to save webstore data for " + uuid + ": " + e.getMessage());
+        }
+    }
+
+    private byte[] encodePlayerData(UUID uuid) {
         JSONObject data = new JSONObject();
 
         // Save prefix
-        String prefix = playerPrefixes.get(player.getUniqueId());
+        String prefix = playerPrefixes.get(uuid);
         if (prefix != null) {
             data.put("prefix", prefix);
         }
 
         // Save purchase history
-        PurchaseHistory history = purchaseHistory.get(player.getUniqueId());
+        PurchaseHistory history = purchaseHistory.get(uuid);
         if (history != null) {
             JSONObject historyData = new JSONObject();
             for (Purchase purchase : history.getPurchases()) {
@@ -389,12 +615,45 @@ public class WebstoreManager implements Listener {
             }
             data.put("purchaseHistory", historyData);
         }
+        return data.toJSONString().getBytes(StandardCharsets.UTF_8);
+    }
 
-        try (FileWriter writer = new FileWriter(playerFile)) {
-            writer.write(data.toJSONString());
-        } catch (IOException e) {
-            plugin.getLogger().severe("Failed to save webstore data for " + player.getName() + ": " + e.getMessage());
+    // Main thread: encodes every loaded player; the returned task writes them in one batch
+    private Callable<Integer> prepareShutdownFlush() {
+        Set<UUID> players = new HashSet<>(playerPrefixes.keySet());
+        players.addAll(purchaseHistory.keySet());
+        if (players.isEmpty())
+            return null;
+
+        Map<UUID, byte[]> records = new HashMap<>();
+        for (UUID uuid : players) {
+            records.put(uuid, encodePlayerData(uuid));
+        }
+        return () -> {
+            try {
+                plugin.getDataStore().putAll(DataStore.Namespace.WEBSTORE, records);
+                return 0;
+            } catch (IOException e) {
+                plugin.getLogger().severe("Failed to save webstore data: " + e.getMessage());
+                return records.size();
+            }
+        };
+    }
+
+    public void shutdown() {
+        sync.stop();
+        if (webhookServer != null) {
+            webhookServer.stop();
         }
+        // In flight, or failed without a definitive answer
+        if (!unresolvedRequests.isEmpty()) {
+            plugin.getLogger().warning(unresolvedRequests.size()
+                    + " webstore requests have no known outcome; check the webstore for them");
+        }
+        pendingRequests.clear();
+        unresolvedRequests.clear();
+        playerPrefixes.clear();
+        purchaseHistory.clear();
     }
 
     public void setPrefix(Player player, String prefix) {
@@ -402,13 +661,20 @@ public class WebstoreManager implements Listener {
             return;
 
         playerPrefixes.put(player.getUniqueId(), prefix);
-        savePlayerData(player);
+        savePlayerData(player.getUniqueId());
     }
 
     public String getPrefix(Player player) {
         return playerPrefixes.getOrDefault(player.getUniqueId(), "!-<" + player.getName() + ">");
     }
 
+    // Main thread: forgets offline players' loaded state so the next access rereads the store
+    public void invalidate(Predicate<UUID> filter) {
+        Predicate<UUID> offline = uuid -> filter.test(uuid) && plugin.getServer().getPlayer(uuid) == null;
+        playerPrefixes.keySet().removeIf(offline);
+        purchaseHistory.keySet().removeIf(offline);
+    }
+
     public void setEnabled(boolean enabled) {
         this.enabled = enabled;
     }
@@ -427,6 +693,10 @@ public class WebstoreManager implements Listener {
         loadStoreItems();
     }
 
+    public WebhookServer getWebhookServer() {
+        return webhookServer;
+    }
+
     public int getConnectedPlayers() {
         return playerPrefixes.size();
     }
@@ -439,12 +709,65 @@ public class WebstoreManager implements Listener {
         if (playerData == null)
             return;
 
-        // TODO: Implement actual webstore sync
-        // This would sync:
-        // - Purchase history
-        // - Active items
-        // - Player status
-        // - etc.
+        sync.sync(Collections.singletonList(player.getUniqueId()));
+    }
+
+    // Main thread: makes an online player's purchases and prefix match what the webstore reports.
+    // Null arguments mean the webstore did not report that field. The answer describes the webstore
+    // as of sentAt, so purchases recorded since then, and players with a request still open, are
+    // left alone until the next cycle. Returns true if anything changed.
+    boolean applyRemoteState(UUID uuid, String prefix, Map<String, Purchase> purchases, long sentAt) {
+        // Only online players are reconciled
+        if (plugin.getServer().getPlayer(uuid) == null || hasPendingRequest(uuid))
+            return false;
+
+        // The stored prefix must survive a save even when the webstore did not report one
+        ensureLoaded(uuid);
+        boolean changed = false;
+        if (purchases != null) {
+            PurchaseHistory history = purchaseHistory.computeIfAbsent(uuid, k -> new PurchaseHistory());
+            for (Purchase local : new ArrayList<>(history.getPurchases())) {
+                if (local.getTimestamp() >= sentAt)
+                    continue;
+                if (!purchases.containsKey(local.getItemId())) {
+                    // Refunded or revoked on the webstore side
+                    history.removePurchase(local.getItemId());
+                    removePurchase(uuid, local.getItemId());
+                    changed = true;
+                }
+            }
+            for (Purchase remote : purchases.values()) {
+                Purchase local = history.getPurchase(remote.getItemId());
+                if (local != null && (local.getTimestamp() >= sentAt || remote.getTransactionId() != null
+                        && remote.getTransactionId().equals(local.getTransactionId())))
+                    continue;
+                history.addPurchase(remote);
+                StoreItem item = storeItems.get(remote.getItemId());
+                if (local == null && item != null) {
+                    applyPurchase(uuid, item);
+                }
+                changed = true;
+            }
+        }
+        if (prefix != null && !prefix.equals(playerPrefixes.get(uuid))) {
+            playerPrefixes.put(uuid, prefix);
+            changed = true;
+        }
+
+        if (changed) {
+            savePlayerData(uuid);
+        }
+        return changed;
+    }
+
+    private boolean hasPendingRequest(UUID uuid) {
+        // Operations are named <type>:<uuid>:<detail>
+        String player = ":" + uuid + ":";
+        for (String operation : pendingRequests.keySet()) {
+            if (operation.contains(player))
+                return true;
+        }
+        return false;
     }
 
     public static class StoreItem {
@@ -544,4 +867,14 @@ public class WebstoreManager implements Listener {
             return purchases.values();
         }
     }
-}
\ No newline at end of file
+
+    private static final class UnresolvedRequest {
+        private final String idempotencyKey;
+        private final String body;
+
+        private UnresolvedRequest(String body) {
+            this.idempotencyKey = UUID.randomUUID().toString();
+            this.body = body;
+        }
+    }
+}
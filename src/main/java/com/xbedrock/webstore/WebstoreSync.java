@@ -0,0 +1,220 @@
+package com.xbedrock.webstore;
+
+import com.xbedrock.XBedrockPlugin;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Reconciles online players' purchases and prefixes with the webstore. Each cycle snapshots the
+// online players and posts them in chunks to the batch endpoint, a few chunks at a time over
+// the shared HTTP/2 client. Answers are queued, and a per-tick task applies them until the tick's
+// time budget runs out, so a large server never spends one long tick reconciling.
+class WebstoreSync {
+    private static final long DEFAULT_INTERVAL = 300; // seconds
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final long DEFAULT_TICK_BUDGET = 2; // milliseconds
+    private static final int MAX_IN_FLIGHT = 4;
+
+    private final XBedrockPlugin plugin;
+    private final WebstoreManager webstoreManager;
+    private final int batchSize;
+    private final long tickBudgetNanos;
+    private final Queue<RemoteState> results;
+    // Set while a full cycle still has chunks outstanding
+    private final AtomicBoolean cycleRunning;
+    private BukkitTask cycleTask;
+    private BukkitTask applyTask;
+
+    WebstoreSync(XBedrockPlugin plugin, WebstoreManager webstoreManager) {
+        this.plugin = plugin;
+        this.webstoreManager = webstoreManager;
+        this.batchSize = Math.max(1, plugin.getConfig().getInt("features.webstore.sync-batch-size", DEFAULT_BATCH_SIZE));
+        this.tickBudgetNanos = TimeUnit.MILLISECONDS.toNanos(
+                Math.max(1, plugin.getConfig().getLong("features.webstore.sync-tick-budget", DEFAULT_TICK_BUDGET)));
+        this.results = new ConcurrentLinkedQueue<>();
+        this.cycleRunning = new AtomicBoolean();
+    }
+
+    void start() {
+        long interval = Math.max(10, plugin.getConfig().getLong("features.webstore.sync-interval", DEFAULT_INTERVAL))
+                * 20;
+        cycleTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::syncOnline, interval, interval);
+        applyTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::applyResults, 1, 1);
+    }
+
+    void stop() {
+        if (cycleTask != null) {
+            cycleTask.cancel();
+        }
+        if (applyTask != null) {
+            applyTask.cancel();
+        }
+        results.clear();
+    }
+
+    // Main thread
+    private void syncOnline() {
+        if (!webstoreManager.isEnabled() || !cycleRunning.compareAndSet(false, true))
+            return;
+
+        List<UUID> players = new ArrayList<>();
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            players.add(player.getUniqueId());
+        }
+        if (!sync(players, () -> cycleRunning.set(false))) {
+            cycleRunning.set(false);
+        }
+    }
+
+    // Syncs the given players outside the regular cycle; returns false if there is nothing to send
+    boolean sync(Collection<UUID> players) {
+        return sync(players, null);
+    }
+
+    private boolean sync(Collection<UUID> players, Runnable onComplete) {
+        if (players.isEmpty())
+            return false;
+
+        List<List<UUID>> chunks = new ArrayList<>();
+        List<UUID> chunk = new ArrayList<>(batchSize);
+        for (UUID uuid : players) {
+            chunk.add(uuid);
+            if (chunk.size() >= batchSize) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(batchSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger remaining = new AtomicInteger(chunks.size());
+        for (int i = 0; i < Math.min(MAX_IN_FLIGHT, chunks.size()); i++) {
+            sendNext(chunks, next, remaining, onComplete);
+        }
+        return true;
+    }
+
+    // Each finished chunk starts the next one, which keeps at most MAX_IN_FLIGHT requests open
+    private void sendNext(List<List<UUID>> chunks, AtomicInteger next, AtomicInteger remaining, Runnable onComplete) {
+        int index = next.getAndIncrement();
+        if (index >= chunks.size())
+            return;
+
+        List<UUID> chunk = chunks.get(index);
+        JSONArray playerIds = new JSONArray();
+        for (UUID uuid : chunk) {
+            playerIds.add(uuid.toString());
+        }
+        JSONObject body = new JSONObject();
+        body.put("playerIds", playerIds);
+
+        long sentAt = System.currentTimeMillis();
+        webstoreManager.post("/sync", body)
+                .thenApply(webstoreManager::parseResponse)
+                .whenComplete((response, error) -> {
+                    try {
+                        if (error != null) {
+                            plugin.getLogger().warning("Webstore sync of " + chunk.size() + " players failed: "
+                                    + WebstoreManager.unwrap(error).getMessage());
+                        } else {
+                            parseStates(response, new HashSet<>(chunk), sentAt);
+                        }
+                    } finally {
+                        // A chunk that fails to parse must still count, or the cycle never ends
+                        if (remaining.decrementAndGet() == 0) {
+                            if (onComplete != null) {
+                                onComplete.run();
+                            }
+                        } else {
+                            sendNext(chunks, next, remaining, onComplete);
+                        }
+                    }
+                });
+    }
+
+    // Runs on the HTTP client's threads; entries for players outside the requested chunk are ignored
+    private void parseStates(JSONObject response, Set<UUID> requested, long sentAt) {
+        JSONObject players;
+        try {
+            players = (JSONObject) response.get("players");
+        } catch (ClassCastException | NullPointerException e) {
+            plugin.getLogger().warning("Ignoring malformed webstore sync response");
+            return;
+        }
+        if (players == null)
+            return;
+
+        for (Object key : players.keySet()) {
+            try {
+                UUID uuid = UUID.fromString((String) key);
+                if (!requested.contains(uuid))
+                    continue;
+                JSONObject data = (JSONObject) players.get(key);
+
+                Map<String, WebstoreManager.Purchase> purchases = null;
+                JSONObject purchaseData = (JSONObject) data.get("purchases");
+                if (purchaseData != null) {
+                    purchases = new HashMap<>();
+                    for (Object itemKey : purchaseData.keySet()) {
+                        String itemId = (String) itemKey;
+                        JSONObject purchase = (JSONObject) purchaseData.get(itemId);
+                        purchases.put(itemId, new WebstoreManager.Purchase(
+                                itemId,
+                                ((Number) purchase.get("timestamp")).longValue(),
+                                (String) purchase.get("transactionId")));
+                    }
+                }
+                results.add(new RemoteState(uuid, (String) data.get("prefix"), purchases, sentAt));
+            } catch (ClassCastException | IllegalArgumentException | NullPointerException e) {
+                plugin.getLogger().warning("Ignoring malformed webstore sync entry for " + key);
+            }
+        }
+    }
+
+    // Main thread
+    private void applyResults() {
+        if (results.isEmpty())
+            return;
+
+        long deadline = System.nanoTime() + tickBudgetNanos;
+        RemoteState state;
+        while ((state = results.poll()) != null) {
+            webstoreManager.applyRemoteState(state.uuid, state.prefix, state.purchases, state.sentAt);
+            if (System.nanoTime() >= deadline)
+                break;
+        }
+    }
+
+    private static final class RemoteState {
+        private final UUID uuid;
+        // Null when the webstore did not report the field; the local value is kept
+        private final String prefix;
+        private final Map<String, WebstoreManager.Purchase> purchases;
+        // When the chunk was sent; the answer says nothing about later local changes
+        private final long sentAt;
+
+        private RemoteState(UUID uuid, String prefix, Map<String, WebstoreManager.Purchase> purchases, long sentAt) {
+            this.uuid = uuid;
+            this.prefix = prefix;
+            this.purchases = purchases;
+            this.sentAt = sentAt;
+        }
+    }
+}